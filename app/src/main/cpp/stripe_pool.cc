@@ -0,0 +1,69 @@
+// stripe_pool.cc
+
+#include "stripe_pool.h"
+
+namespace cameramotiontracker {
+
+StripePool::StripePool(int thread_count) {
+  for (int i = 1; i < thread_count; ++i) {
+    workers_.emplace_back(&StripePool::WorkerLoop, this);
+  }
+}
+
+StripePool::~StripePool() {
+  {
+    std::lock_guard<std::mutex> lock(mutex_);
+    stopping_ = true;
+  }
+  work_available_.notify_all();
+  for (auto& worker : workers_) {
+    worker.join();
+  }
+}
+
+void StripePool::Run(int stripe_count, const std::function<void(int)>& task) {
+  if (stripe_count <= 0) return;
+  if (workers_.empty() || stripe_count == 1) {
+    for (int stripe = 0; stripe < stripe_count; ++stripe) task(stripe);
+    return;
+  }
+
+  std::lock_guard<std::mutex> run_lock(run_mutex_);
+  std::unique_lock<std::mutex> lock(mutex_);
+  task_ = &task;
+  stripe_count_ = stripe_count;
+  next_stripe_ = 0;
+  remaining_stripes_ = stripe_count;
+  ++generation_;
+  work_available_.notify_all();
+
+  RunStripes(lock);
+  work_done_.wait(lock, [this] { return remaining_stripes_ == 0; });
+  task_ = nullptr;
+}
+
+void StripePool::RunStripes(std::unique_lock<std::mutex>& lock) {
+  while (next_stripe_ < stripe_count_) {
+    int stripe = next_stripe_++;
+    const std::function<void(int)>* task = task_;
+    lock.unlock();
+    (*task)(stripe);
+    lock.lock();
+    if (--remaining_stripes_ == 0) {
+      work_done_.notify_all();
+    }
+  }
+}
+
+void StripePool::WorkerLoop() {
+  unsigned int seen_generation = 0;
+  std::unique_lock<std::mutex> lock(mutex_);
+  while (true) {
+    work_available_.wait(lock, [&] { return stopping_ || generation_ != seen_generation; });
+    if (stopping_) return;
+    seen_generation = generation_;
+    RunStripes(lock);
+  }
+}
+
+}
@@ -0,0 +1,54 @@
+// stripe_pool.h
+
+#ifndef CAMERAMOTIONTRACKER_STRIPE_POOL_H
+#define CAMERAMOTIONTRACKER_STRIPE_POOL_H
+
+#include <condition_variable>
+#include <functional>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+namespace cameramotiontracker {
+
+// Fixed set of worker threads which process the stripes of one image at a time.
+// Threads are created once by the constructor and live until the pool is destroyed,
+// so a frame only pays for waking them up.
+class StripePool {
+ public:
+  // `thread_count` includes the thread calling Run, so thread_count - 1 workers are started.
+  explicit StripePool(int thread_count);
+  ~StripePool();
+
+  StripePool(const StripePool&) = delete;
+  StripePool& operator=(const StripePool&) = delete;
+
+  // Calls task(stripe) for every stripe in [0, stripe_count) on the calling thread and the
+  // workers, and returns when all of them are done. Calls from several threads are serialized.
+  void Run(int stripe_count, const std::function<void(int)>& task);
+
+  int thread_count() const { return static_cast<int>(workers_.size()) + 1; }
+
+ private:
+  void WorkerLoop();
+  // Runs stripes of the current job until none is left. Requires `lock` to be held.
+  void RunStripes(std::unique_lock<std::mutex>& lock);
+
+  std::vector<std::thread> workers_;
+  std::mutex run_mutex_;
+
+  // state of the current job, guarded by mutex_
+  std::mutex mutex_;
+  std::condition_variable work_available_;
+  std::condition_variable work_done_;
+  const std::function<void(int)>* task_ = nullptr;
+  int stripe_count_ = 0;
+  int next_stripe_ = 0;
+  int remaining_stripes_ = 0;
+  unsigned int generation_ = 0;
+  bool stopping_ = false;
+};
+
+}
+
+#endif //CAMERAMOTIONTRACKER_STRIPE_POOL_H
@@ -4,14 +4,22 @@
 
 // yuv2rgb-jni.cc
 #include <jni.h>
-#include <android/log.h>
 
 #include "yuv2rgb.h"
 
+// also built for the host JVM, see app/src/test/cpp, where errors go to stderr
+#ifdef __ANDROID__
+#include <android/log.h>
+#define LOG_ERROR(tag, message) __android_log_print(ANDROID_LOG_ERROR, tag, "%s", message)
+#else
+#include <cstdio>
+#define LOG_ERROR(tag, message) fprintf(stderr, "%s %s\n", tag, message)
+#endif
+
 extern "C" {
 
 jboolean
-Java_com_example_cameramotiontracker_YuvConverter_yuv420toArgbNative(
+Java_com_example_cameramotiontracker_YuvNative_yuv420toArgbNative(
   JNIEnv* env, jclass clazz, jint width, jint height, jobject y_byte_buffer,
     jobject u_byte_buffer, jobject v_byte_buffer, jint y_pixel_stride,
     jint uv_pixel_stride, jint y_row_stride, jint uv_row_stride,
@@ -23,8 +31,10 @@ Java_com_example_cameramotiontracker_YuvConverter_yuv420toArgbNative(
   if (argb_result_array == nullptr || y_buffer == nullptr || u_buffer == nullptr
       || v_buffer == nullptr) {
     const char *PRIVATE_TAG = "[yuv420toArgbNative]";
-    __android_log_print(ANDROID_LOG_ERROR, PRIVATE_TAG,
-                        "[yuv420toArgbNative] One or more inputs are null.");
+    LOG_ERROR(PRIVATE_TAG, "[yuv420toArgbNative] One or more inputs are null.");
+    if (argb_result_array != nullptr) {
+      env->ReleaseIntArrayElements(argb_array, argb_result_array, JNI_ABORT);
+    }
     return false;
     }
 
@@ -34,7 +44,81 @@ Java_com_example_cameramotiontracker_YuvConverter_yuv420toArgbNative(
                    reinterpret_cast<const uint8_t*>(v_buffer),
                    y_pixel_stride, uv_pixel_stride, y_row_stride, uv_row_stride,
                    argb_result_array);
+  // the VM may have handed out a copy, which is written back and freed here
+  env->ReleaseIntArrayElements(argb_array, argb_result_array, 0);
+  return true;
+}
+
+jboolean
+Java_com_example_cameramotiontracker_YuvNative_yuv420toMatNative(
+  JNIEnv* env, jclass clazz, jint width, jint height, jobject y_byte_buffer,
+    jobject u_byte_buffer, jobject v_byte_buffer, jint y_pixel_stride,
+    jint uv_pixel_stride, jint y_row_stride, jint uv_row_stride,
+    jlong mat_data_address, jint mat_row_stride, jint channel_order) {
+  auto y_buffer = reinterpret_cast<uint8_t*>(env->GetDirectBufferAddress(y_byte_buffer));
+  auto u_buffer = reinterpret_cast<uint8_t*>(env->GetDirectBufferAddress(u_byte_buffer));
+  auto v_buffer = reinterpret_cast<uint8_t*>(env->GetDirectBufferAddress(v_byte_buffer));
+  auto mat_data = reinterpret_cast<uint8_t*>(mat_data_address);
+  if (mat_data == nullptr || y_buffer == nullptr || u_buffer == nullptr
+      || v_buffer == nullptr) {
+    const char *PRIVATE_TAG = "[yuv420toMatNative]";
+    LOG_ERROR(PRIVATE_TAG, "[yuv420toMatNative] One or more inputs are null.");
+    return false;
+  }
+
+  cameramotiontracker::Yuv2Rgb888(width, height, y_buffer, u_buffer, v_buffer,
+                   y_pixel_stride, uv_pixel_stride, y_row_stride, uv_row_stride,
+                   mat_data, mat_row_stride,
+                   static_cast<cameramotiontracker::ChannelOrder>(channel_order));
+  return true;
+}
+
+jboolean
+Java_com_example_cameramotiontracker_YuvNative_yuv420CropResizeNative(
+  JNIEnv* env, jclass clazz, jint width, jint height, jobject y_byte_buffer,
+    jobject u_byte_buffer, jobject v_byte_buffer, jint y_pixel_stride,
+    jint uv_pixel_stride, jint y_row_stride, jint uv_row_stride,
+    jfloat crop_y_min, jfloat crop_x_min, jfloat crop_y_max, jfloat crop_x_max,
+    jint rotation, jboolean mirror, jobject output_byte_buffer,
+    jint output_width, jint output_height, jint channel_order, jint element_type,
+    jfloat value_scale, jfloat value_offset) {
+  auto y_buffer = reinterpret_cast<uint8_t*>(env->GetDirectBufferAddress(y_byte_buffer));
+  auto u_buffer = reinterpret_cast<uint8_t*>(env->GetDirectBufferAddress(u_byte_buffer));
+  auto v_buffer = reinterpret_cast<uint8_t*>(env->GetDirectBufferAddress(v_byte_buffer));
+  auto output = reinterpret_cast<uint8_t*>(env->GetDirectBufferAddress(output_byte_buffer));
+  const char *PRIVATE_TAG = "[yuv420CropResizeNative]";
+  if (output == nullptr || y_buffer == nullptr || u_buffer == nullptr
+      || v_buffer == nullptr) {
+    LOG_ERROR(PRIVATE_TAG, "[yuv420CropResizeNative] One or more inputs are null.");
+    return false;
+  }
+  const jlong element_size = element_type == cameramotiontracker::kElementFloat32 ? 4 : 1;
+  if (env->GetDirectBufferCapacity(output_byte_buffer)
+      < static_cast<jlong>(output_width) * output_height * 3 * element_size) {
+    LOG_ERROR(PRIVATE_TAG, "[yuv420CropResizeNative] Output buffer is too small.");
+    return false;
+  }
+
+  cameramotiontracker::YuvCropResize(width, height, y_buffer, u_buffer, v_buffer,
+                   y_pixel_stride, uv_pixel_stride, y_row_stride, uv_row_stride,
+                   crop_y_min, crop_x_min, crop_y_max, crop_x_max, rotation, mirror,
+                   output, output_width, output_height,
+                   static_cast<cameramotiontracker::ChannelOrder>(channel_order),
+                   static_cast<cameramotiontracker::ElementType>(element_type),
+                   value_scale, value_offset);
   return true;
 }
 
-}
\ No newline at end of file
+void
+Java_com_example_cameramotiontracker_YuvNative_setThreadCountNative(
+  JNIEnv* env, jclass clazz, jint thread_count) {
+  cameramotiontracker::SetThreadCount(thread_count);
+}
+
+jint
+Java_com_example_cameramotiontracker_YuvNative_getThreadCountNative(
+  JNIEnv* env, jclass clazz) {
+  return cameramotiontracker::GetThreadCount();
+}
+
+}
@@ -2,46 +2,376 @@
 // Created by Mason on 3/17/2022.
 //
 
-#include "yuv2rgb.h"
-
 // yuv2rgb.cc
 
 #include "yuv2rgb.h"
+#include "yuv2rgb_row.h"
+#include "stripe_pool.h"
+
+#include <math.h>
 #include <stdint.h>
+#include <string.h>
+
+#include <algorithm>
+#include <atomic>
+#include <functional>
+#include <memory>
+#include <mutex>
+#include <vector>
+
+#if defined(YUV2RGB_HAS_NEON) && defined(__ANDROID__) && defined(__arm__)
+#include <cpu-features.h>
+#endif
 
 namespace cameramotiontracker {
 
+// Kernel used by the converters, -1 until detected on first use.
+static std::atomic<int> g_kernel(-1);
+
+static bool IsKernelSupported(Yuv2RgbKernel kernel) {
+  switch (kernel) {
+    case kKernelScalar:
+      return true;
+    case kKernelNeon:
+#if defined(YUV2RGB_HAS_NEON)
+#if defined(__ANDROID__) && defined(__arm__)
+      return android_getCpuFamily() == ANDROID_CPU_FAMILY_ARM
+          && (android_getCpuFeatures() & ANDROID_CPU_ARM_FEATURE_NEON) != 0;
+#else
+      return true;
+#endif
+#else
+      return false;
+#endif
+    case kKernelSse2:
+#if defined(YUV2RGB_HAS_SSE2)
+      return __builtin_cpu_supports("sse2");
+#else
+      return false;
+#endif
+  }
+  return false;
+}
+
+Yuv2RgbKernel DetectKernel() {
+  if (IsKernelSupported(kKernelNeon)) return kKernelNeon;
+  if (IsKernelSupported(kKernelSse2)) return kKernelSse2;
+  return kKernelScalar;
+}
+
+void SetKernel(Yuv2RgbKernel kernel) {
+  g_kernel.store(IsKernelSupported(kernel) ? kernel : kKernelScalar);
+}
+
+Yuv2RgbKernel GetKernel() {
+  int kernel = g_kernel.load(std::memory_order_relaxed);
+  if (kernel < 0) {
+    kernel = DetectKernel();
+    g_kernel.store(kernel);
+  }
+  return static_cast<Yuv2RgbKernel>(kernel);
+}
+
+// Worker threads shared by all converters, null while converting on the calling thread only.
+static std::mutex g_pool_mutex;
+static std::shared_ptr<StripePool> g_pool;
+
+// Stripes smaller than this cost more to hand over than they save.
+static const int kMinStripeRows = 32;
+
+void SetThreadCount(int thread_count) {
+  thread_count = std::max(thread_count, 1);
+  std::lock_guard<std::mutex> lock(g_pool_mutex);
+  int current = g_pool ? g_pool->thread_count() : 1;
+  if (current == thread_count) return;
+  // a conversion running on the old pool keeps it alive until it is done
+  g_pool = thread_count > 1 ? std::make_shared<StripePool>(thread_count) : nullptr;
+}
+
+int GetThreadCount() {
+  std::lock_guard<std::mutex> lock(g_pool_mutex);
+  return g_pool ? g_pool->thread_count() : 1;
+}
+
+// Splits rows [0, rows) into one horizontal stripe per thread, each a multiple of
+// `alignment` rows, and calls task(row_begin, row_end) for every stripe in parallel.
+static void ForEachStripe(int rows, int alignment, const std::function<void(int, int)>& task) {
+  std::shared_ptr<StripePool> pool;
+  {
+    std::lock_guard<std::mutex> lock(g_pool_mutex);
+    pool = g_pool;
+  }
+  int stripes = pool ? std::min(pool->thread_count(), rows / kMinStripeRows) : 1;
+  if (stripes <= 1) {
+    task(0, rows);
+    return;
+  }
+
+  int rows_per_stripe = (rows + stripes - 1) / stripes;
+  rows_per_stripe = (rows_per_stripe + alignment - 1) / alignment * alignment;
+  pool->Run(stripes, [&](int stripe) {
+    int row_begin = stripe * rows_per_stripe;
+    int row_end = std::min(rows, row_begin + rows_per_stripe);
+    if (row_begin < row_end) task(row_begin, row_end);
+  });
+}
+
+static PixelLayout ToPixelLayout(ChannelOrder order) {
+  return order == kChannelOrderBgr ? kPixelLayoutBgr : kPixelLayoutRgb;
+}
+
+void ConvertRowPairScalar(const uint8_t* y_row0, const uint8_t* y_row1,
+                          const uint8_t* u_row, const uint8_t* v_row,
+                          int y_pixel_stride, int uv_pixel_stride,
+                          uint8_t* out_row0, uint8_t* out_row1,
+                          int x_begin, int width, PixelLayout layout) {
+  const int bytes_per_pixel = BytesPerPixel(layout);
+  int r_term, g_term, b_term;
+  // x_begin is always even, so each iteration covers the 2x2 pixels of one chroma sample
+  for (int x = x_begin; x < width; x += 2) {
+    int uv_idx = (x / 2) * uv_pixel_stride;
+    ChromaTerms(u_row[uv_idx], v_row[uv_idx], &r_term, &g_term, &b_term);
+
+    int pixels = x + 1 < width ? 2 : 1;
+    for (int i = 0; i < pixels; ++i) {
+      int y_idx = (x + i) * y_pixel_stride;
+      int out_idx = (x + i) * bytes_per_pixel;
+      StorePixel(y_row0[y_idx], r_term, g_term, b_term, out_row0 + out_idx, layout);
+      if (y_row1 != nullptr) {
+        StorePixel(y_row1[y_idx], r_term, g_term, b_term, out_row1 + out_idx, layout);
+      }
+    }
+  }
+}
+
+// Converts rows [row_begin, row_end) of the image, row_begin must be even.
+static void ConvertRows(int width, const uint8_t* y_buffer, const uint8_t* u_buffer,
+            const uint8_t* v_buffer, int y_pixel_stride, int uv_pixel_stride,
+            int y_row_stride, int uv_row_stride, int row_begin, int row_end,
+            uint8_t* output, int output_row_stride, PixelLayout layout) {
+  Yuv2RgbKernel kernel = GetKernel();
+  // the vector kernels only handle contiguous luma and planar or semi planar chroma
+  if (y_pixel_stride != 1 || (uv_pixel_stride != 1 && uv_pixel_stride != 2)) {
+    kernel = kKernelScalar;
+  }
+
+  for (int y = row_begin; y < row_end; y += 2) {
+    const bool has_second_row = y + 1 < row_end;
+    const uint8_t* y_row0 = y_buffer + y * y_row_stride;
+    const uint8_t* y_row1 = has_second_row ? y_row0 + y_row_stride : nullptr;
+    const uint8_t* u_row = u_buffer + (y / 2) * uv_row_stride;
+    const uint8_t* v_row = v_buffer + (y / 2) * uv_row_stride;
+    uint8_t* out_row0 = output + y * output_row_stride;
+    uint8_t* out_row1 = has_second_row ? out_row0 + output_row_stride : nullptr;
+
+    int converted = 0;
+    switch (kernel) {
+#if defined(YUV2RGB_HAS_NEON)
+      case kKernelNeon:
+        converted = ConvertRowPairNeon(y_row0, y_row1, u_row, v_row, uv_pixel_stride,
+                                       out_row0, out_row1, width, layout);
+        break;
+#endif
+#if defined(YUV2RGB_HAS_SSE2)
+      case kKernelSse2:
+        converted = ConvertRowPairSse2(y_row0, y_row1, u_row, v_row, uv_pixel_stride,
+                                       out_row0, out_row1, width, layout);
+        break;
+#endif
+      default:
+        break;
+    }
+    ConvertRowPairScalar(y_row0, y_row1, u_row, v_row, y_pixel_stride, uv_pixel_stride,
+                         out_row0, out_row1, converted, width, layout);
+  }
+}
+
 void Yuv2Rgb(int width, int height, const uint8_t* y_buffer, const uint8_t* u_buffer,
             const uint8_t* v_buffer, int y_pixel_stride, int uv_pixel_stride,
             int y_row_stride, int uv_row_stride, int* argb_output) {
-  uint32_t a = (255u << 24);
-  uint8_t r, g, b;
-  int16_t y_val, u_val, v_val;
-
-  for (int y = 0; y < height; ++y) {
-    for (int x = 0; x < width; ++x) {
-      // Y plane should have positive values belonging to [0...255]
-      int y_idx = (y * y_row_stride) + (x * y_pixel_stride);
-      y_val = static_cast<int16_t>(y_buffer[y_idx]);
-
-      int uvx = x / 2;
-      int uvy = y / 2;
-      // U/V Values are sub-sampled i.e. each pixel in U/V channel in a
-      // YUV_420 image act as chroma value for 4 neighbouring pixels
-      int uv_idx = (uvy * uv_row_stride) +  (uvx * uv_pixel_stride);
-
-      u_val = static_cast<int16_t>(u_buffer[uv_idx]) - 128;
-      v_val = static_cast<int16_t>(v_buffer[uv_idx]) - 128;
-
-      // Compute RGB values per formula above.
-      r = y_val + 1.370705f * v_val;
-      g = y_val - (0.698001f * v_val) - (0.337633f * u_val);
-      b = y_val + 1.732446f * u_val;
-
-      int argb_idx = y * width + x;
-      argb_output[argb_idx] = a | r << 16 | g << 8 | b;
+  ForEachStripe(height, 2, [&](int row_begin, int row_end) {
+    ConvertRows(width, y_buffer, u_buffer, v_buffer, y_pixel_stride, uv_pixel_stride,
+                y_row_stride, uv_row_stride, row_begin, row_end,
+                reinterpret_cast<uint8_t*>(argb_output), width * 4, kPixelLayoutArgb);
+  });
+}
+
+void Yuv2Rgb888(int width, int height, const uint8_t* y_buffer, const uint8_t* u_buffer,
+            const uint8_t* v_buffer, int y_pixel_stride, int uv_pixel_stride,
+            int y_row_stride, int uv_row_stride, uint8_t* output,
+            int output_row_stride, ChannelOrder order) {
+  ForEachStripe(height, 2, [&](int row_begin, int row_end) {
+    ConvertRows(width, y_buffer, u_buffer, v_buffer, y_pixel_stride, uv_pixel_stride,
+                y_row_stride, uv_row_stride, row_begin, row_end, output, output_row_stride,
+                ToPixelLayout(order));
+  });
+}
+
+// Maps `count` output samples spread evenly over the normalized range [begin, end)
+// to pixel indices of an axis of `length` pixels, -1 when outside of the image.
+static void SampleAxis(float begin, float end, int count, int length, int* indices) {
+  const float step = (end - begin) / count;
+  for (int i = 0; i < count; ++i) {
+    int index = static_cast<int>(floorf((begin + (i + 0.5f) * step) * length));
+    indices[i] = (index < 0 || index >= length) ? -1 : index;
+  }
+}
+
+// Source pixel lookup tables of a crop, see YuvCropResize.
+struct CropSampling {
+  // oriented pixel index of every output row and column, -1 outside of the image
+  std::vector<int> rows;
+  std::vector<int> columns;
+  // source coordinates are affine in the oriented coordinates:
+  // sx = sx_from_column + sx_from_row, likewise for sy
+  std::vector<int> sx_from_column;
+  std::vector<int> sy_from_column;
+  std::vector<int> sx_from_row;
+  std::vector<int> sy_from_row;
+};
+
+template <typename T>
+static inline T ToElement(float value);
+
+template <>
+inline uint8_t ToElement<uint8_t>(float value) {
+  return static_cast<uint8_t>(std::min(std::max(lrintf(value), 0L), 255L));
+}
+
+template <>
+inline int8_t ToElement<int8_t>(float value) {
+  return static_cast<int8_t>(std::min(std::max(lrintf(value), -128L), 127L));
+}
+
+template <>
+inline float ToElement<float>(float value) {
+  return value;
+}
+
+// Element of every 8 bit pixel value, see YuvCropResize.
+template <typename T>
+struct ElementTable {
+  T values[256];
+
+  ElementTable(float value_scale, float value_offset) {
+    for (int i = 0; i < 256; ++i) values[i] = ToElement<T>(i * value_scale + value_offset);
+  }
+};
+
+template <typename T>
+static void SampleCropRows(const CropSampling& sampling, const uint8_t* y_buffer,
+            const uint8_t* u_buffer, const uint8_t* v_buffer, int y_pixel_stride,
+            int uv_pixel_stride, int y_row_stride, int uv_row_stride, int row_begin,
+            int row_end, int output_width, ChannelOrder order, const ElementTable<T>& table,
+            T* output) {
+  const int r_offset = order == kChannelOrderBgr ? 2 : 0;
+  const int b_offset = 2 - r_offset;
+  // padding is black in the value range of the output
+  const T black = table.values[0];
+
+  T* out = output + row_begin * output_width * 3;
+  for (int j = row_begin; j < row_end; ++j) {
+    if (sampling.rows[j] < 0) {
+      std::fill(out, out + output_width * 3, black);
+      out += output_width * 3;
+      continue;
+    }
+    for (int i = 0; i < output_width; ++i, out += 3) {
+      if (sampling.columns[i] < 0) {
+        out[0] = out[1] = out[2] = black;
+        continue;
+      }
+      int sx = sampling.sx_from_column[i] + sampling.sx_from_row[j];
+      int sy = sampling.sy_from_column[i] + sampling.sy_from_row[j];
+
+      int uv_idx = (sy / 2) * uv_row_stride + (sx / 2) * uv_pixel_stride;
+      int r_term, g_term, b_term;
+      ChromaTerms(u_buffer[uv_idx], v_buffer[uv_idx], &r_term, &g_term, &b_term);
+      int y_val = y_buffer[sy * y_row_stride + sx * y_pixel_stride];
+      out[r_offset] = table.values[Saturate(y_val + r_term)];
+      out[1] = table.values[Saturate(y_val - g_term)];
+      out[b_offset] = table.values[Saturate(y_val + b_term)];
     }
   }
 }
 
-}
\ No newline at end of file
+template <typename T>
+static void SampleCrop(const CropSampling& sampling, const uint8_t* y_buffer,
+            const uint8_t* u_buffer, const uint8_t* v_buffer, int y_pixel_stride,
+            int uv_pixel_stride, int y_row_stride, int uv_row_stride, int output_width,
+            int output_height, ChannelOrder order, float value_scale, float value_offset,
+            T* output) {
+  const ElementTable<T> table(value_scale, value_offset);
+  ForEachStripe(output_height, 1, [&](int row_begin, int row_end) {
+    SampleCropRows(sampling, y_buffer, u_buffer, v_buffer, y_pixel_stride, uv_pixel_stride,
+                   y_row_stride, uv_row_stride, row_begin, row_end, output_width, order,
+                   table, output);
+  });
+}
+
+void YuvCropResize(int width, int height, const uint8_t* y_buffer, const uint8_t* u_buffer,
+            const uint8_t* v_buffer, int y_pixel_stride, int uv_pixel_stride,
+            int y_row_stride, int uv_row_stride, float crop_y_min, float crop_x_min,
+            float crop_y_max, float crop_x_max, int rotation, bool mirror,
+            void* output, int output_width, int output_height, ChannelOrder order,
+            ElementType element_type, float value_scale, float value_offset) {
+  const bool transposed = rotation == 90 || rotation == 270;
+  const int oriented_width = transposed ? height : width;
+  const int oriented_height = transposed ? width : height;
+
+  CropSampling sampling;
+  sampling.columns.resize(output_width);
+  sampling.rows.resize(output_height);
+  SampleAxis(crop_x_min, crop_x_max, output_width, oriented_width, sampling.columns.data());
+  SampleAxis(crop_y_min, crop_y_max, output_height, oriented_height, sampling.rows.data());
+
+  // Undo the mirror first, then the rotation.
+  sampling.sx_from_column.resize(output_width);
+  sampling.sy_from_column.resize(output_width);
+  for (int i = 0; i < output_width; ++i) {
+    if (sampling.columns[i] < 0) continue;
+    int qx = mirror ? oriented_width - 1 - sampling.columns[i] : sampling.columns[i];
+    int& sx = sampling.sx_from_column[i];
+    int& sy = sampling.sy_from_column[i];
+    switch (rotation) {
+      case 90:  sx = 0;      sy = height - 1 - qx; break;
+      case 180: sx = width - 1 - qx; sy = 0; break;
+      case 270: sx = 0;      sy = qx; break;
+      default:  sx = qx;     sy = 0; break;
+    }
+  }
+  sampling.sx_from_row.resize(output_height);
+  sampling.sy_from_row.resize(output_height);
+  for (int j = 0; j < output_height; ++j) {
+    if (sampling.rows[j] < 0) continue;
+    int qy = sampling.rows[j];
+    int& sx = sampling.sx_from_row[j];
+    int& sy = sampling.sy_from_row[j];
+    switch (rotation) {
+      case 90:  sx = qy;        sy = 0; break;
+      case 180: sx = 0;         sy = height - 1 - qy; break;
+      case 270: sx = width - 1 - qy; sy = 0; break;
+      default:  sx = 0;         sy = qy; break;
+    }
+  }
+
+  switch (element_type) {
+    case kElementInt8:
+      SampleCrop(sampling, y_buffer, u_buffer, v_buffer, y_pixel_stride, uv_pixel_stride,
+                 y_row_stride, uv_row_stride, output_width, output_height, order,
+                 value_scale, value_offset, static_cast<int8_t*>(output));
+      break;
+    case kElementFloat32:
+      SampleCrop(sampling, y_buffer, u_buffer, v_buffer, y_pixel_stride, uv_pixel_stride,
+                 y_row_stride, uv_row_stride, output_width, output_height, order,
+                 value_scale, value_offset, static_cast<float*>(output));
+      break;
+    default:
+      SampleCrop(sampling, y_buffer, u_buffer, v_buffer, y_pixel_stride, uv_pixel_stride,
+                 y_row_stride, uv_row_stride, output_width, output_height, order,
+                 value_scale, value_offset, static_cast<uint8_t*>(output));
+      break;
+  }
+}
+
+}
@@ -5,17 +5,81 @@
 #ifndef CAMERAMOTIONTRACKER_YUV2RGB_H
 #define CAMERAMOTIONTRACKER_YUV2RGB_H
 
-#endif //CAMERAMOTIONTRACKER_YUV2RGB_H
-
 // yuv2rgb.h
 #include <stdint.h>
 
 namespace cameramotiontracker {
 
+// Implementations of the full frame converters. All of them use BT.601 fixed point
+// arithmetic with saturation and give bit identical results.
+enum Yuv2RgbKernel {
+  kKernelScalar = 0,
+  kKernelNeon = 1,
+  kKernelSse2 = 2,
+};
+
+// Returns the fastest kernel supported by the CPU this process runs on.
+Yuv2RgbKernel DetectKernel();
+
+// Forces the kernel used by the converters, mostly for tests and benchmarks.
+// Kernels the CPU does not support fall back to kKernelScalar.
+void SetKernel(Yuv2RgbKernel kernel);
+
+// Returns the kernel used by the converters, detecting it on first call.
+Yuv2RgbKernel GetKernel();
+
+// Sets the number of threads, including the calling one, each conversion is split over.
+// Worker threads are created here once and reused by every conversion. Default is 1.
+void SetThreadCount(int thread_count);
+
+int GetThreadCount();
+
 // Converts the YUV image with the given properties to ARGB image and write to
 // `argb_output` destination.
 void Yuv2Rgb(int width, int height, const uint8_t* y_buffer, const uint8_t* u_buffer,
             const uint8_t* v_buffer, int y_pixel_stride, int uv_pixel_stride,
             int y_row_stride, int uv_row_stride, int* argb_output);
 
-}
\ No newline at end of file
+// Channel order of the packed 3 channel output written by Yuv2Rgb888.
+enum ChannelOrder {
+  kChannelOrderRgb = 0,
+  kChannelOrderBgr = 1,
+};
+
+// Converts the YUV image with the given properties to a packed 8 bit 3 channel
+// image in the given channel order, written row by row to `output`.
+// `output_row_stride` is the distance in bytes between two output rows, so the
+// destination can be the data of a (possibly non-continuous) CV_8UC3 Mat.
+void Yuv2Rgb888(int width, int height, const uint8_t* y_buffer, const uint8_t* u_buffer,
+            const uint8_t* v_buffer, int y_pixel_stride, int uv_pixel_stride,
+            int y_row_stride, int uv_row_stride, uint8_t* output,
+            int output_row_stride, ChannelOrder order);
+
+// Element type of the buffer written by YuvCropResize.
+enum ElementType {
+  kElementUint8 = 0,
+  kElementInt8 = 1,
+  kElementFloat32 = 2,
+};
+
+// Samples a crop of the YUV image straight into a packed 3 channel buffer of
+// `output_width` x `output_height` pixels of `element_type`, e.g. the input tensor
+// of the pose model. Every 8 bit channel value p is stored as
+// p * value_scale + value_offset, rounded and saturated for the integer types, which
+// covers both normalization and quantization of the model input.
+//
+// The crop region is given in normalized coordinates of the *oriented* image, which is
+// the camera image rotated clockwise by `rotation` degrees (0, 90, 180 or 270) and then
+// mirrored horizontally if `mirror` is set. Parts of the crop region outside of the image
+// are filled with black. Pixels are sampled with nearest neighbour interpolation, so only
+// output_width * output_height pixels of the camera image are ever read.
+void YuvCropResize(int width, int height, const uint8_t* y_buffer, const uint8_t* u_buffer,
+            const uint8_t* v_buffer, int y_pixel_stride, int uv_pixel_stride,
+            int y_row_stride, int uv_row_stride, float crop_y_min, float crop_x_min,
+            float crop_y_max, float crop_x_max, int rotation, bool mirror,
+            void* output, int output_width, int output_height, ChannelOrder order,
+            ElementType element_type, float value_scale, float value_offset);
+
+}
+
+#endif //CAMERAMOTIONTRACKER_YUV2RGB_H
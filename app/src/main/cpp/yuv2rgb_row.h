@@ -0,0 +1,114 @@
+// yuv2rgb_row.h
+//
+// Row kernels shared by the converters in yuv2rgb.cc. Not part of the public API.
+
+#ifndef CAMERAMOTIONTRACKER_YUV2RGB_ROW_H
+#define CAMERAMOTIONTRACKER_YUV2RGB_ROW_H
+
+#include <stdint.h>
+
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+#define YUV2RGB_HAS_NEON 1
+#endif
+
+#if defined(__SSE2__)
+#define YUV2RGB_HAS_SSE2 1
+#endif
+
+namespace cameramotiontracker {
+
+// BT.601 full range coefficients in Q9 fixed point:
+//   R = Y + 1.370705 * V
+//   G = Y - 0.337633 * U - 0.698001 * V
+//   B = Y + 1.732446 * U
+// Every chroma term is computed as (c * coefficient) >> 9 on its own, which is exactly
+// what the 16 bit "multiply high" instructions of NEON (vqdmulh) and SSE2 (pmulhw)
+// produce, so all kernels give bit identical results.
+const int kCoefficientVr = 702;
+const int kCoefficientUg = 173;
+const int kCoefficientVg = 357;
+const int kCoefficientUb = 887;
+
+// Memory layout of one output pixel.
+enum PixelLayout {
+  // 32 bit 0xAARRGGBB integer in native (little endian) byte order
+  kPixelLayoutArgb = 0,
+  // packed 3 bytes R, G, B
+  kPixelLayoutRgb = 1,
+  // packed 3 bytes B, G, R
+  kPixelLayoutBgr = 2,
+};
+
+inline int BytesPerPixel(PixelLayout layout) {
+  return layout == kPixelLayoutArgb ? 4 : 3;
+}
+
+inline uint8_t Saturate(int value) {
+  return static_cast<uint8_t>(value < 0 ? 0 : (value > 255 ? 255 : value));
+}
+
+// Writes one pixel, given the luma value and the chroma terms of its chroma sample.
+inline void StorePixel(int y_val, int r_term, int g_term, int b_term, uint8_t* out,
+                       PixelLayout layout) {
+  uint8_t r = Saturate(y_val + r_term);
+  uint8_t g = Saturate(y_val - g_term);
+  uint8_t b = Saturate(y_val + b_term);
+  switch (layout) {
+    case kPixelLayoutArgb:
+      *reinterpret_cast<uint32_t*>(out) = 0xff000000u | (r << 16) | (g << 8) | b;
+      break;
+    case kPixelLayoutRgb:
+      out[0] = r; out[1] = g; out[2] = b;
+      break;
+    case kPixelLayoutBgr:
+      out[0] = b; out[1] = g; out[2] = r;
+      break;
+  }
+}
+
+// Computes the fixed point chroma terms of one U/V sample.
+inline void ChromaTerms(uint8_t u, uint8_t v, int* r_term, int* g_term, int* b_term) {
+  int u_val = static_cast<int>(u) - 128;
+  int v_val = static_cast<int>(v) - 128;
+  *r_term = (v_val * kCoefficientVr) >> 9;
+  *g_term = ((u_val * kCoefficientUg) >> 9) + ((v_val * kCoefficientVg) >> 9);
+  *b_term = (u_val * kCoefficientUb) >> 9;
+}
+
+// Converts pixels [x_begin, width) of one or two rows sharing the same chroma row.
+// `y_row1`/`out_row1` are null when only one row is left.
+void ConvertRowPairScalar(const uint8_t* y_row0, const uint8_t* y_row1,
+                          const uint8_t* u_row, const uint8_t* v_row,
+                          int y_pixel_stride, int uv_pixel_stride,
+                          uint8_t* out_row0, uint8_t* out_row1,
+                          int x_begin, int width, PixelLayout layout);
+
+// Vector versions of ConvertRowPairScalar, which require a Y pixel stride of 1 and
+// a U/V pixel stride of 1 (planar) or 2 (semi planar). They convert pixels from 0 in
+// blocks of 16 and return the number of converted pixels; the caller finishes the
+// rest of the row with the scalar kernel.
+#if defined(YUV2RGB_HAS_NEON)
+int ConvertRowPairNeon(const uint8_t* y_row0, const uint8_t* y_row1,
+                       const uint8_t* u_row, const uint8_t* v_row, int uv_pixel_stride,
+                       uint8_t* out_row0, uint8_t* out_row1, int width,
+                       PixelLayout layout);
+#endif
+
+#if defined(YUV2RGB_HAS_SSE2)
+int ConvertRowPairSse2(const uint8_t* y_row0, const uint8_t* y_row1,
+                       const uint8_t* u_row, const uint8_t* v_row, int uv_pixel_stride,
+                       uint8_t* out_row0, uint8_t* out_row1, int width,
+                       PixelLayout layout);
+#endif
+
+// Number of pixels at the start of a row the vector kernels may convert. Semi planar
+// chroma is loaded 16 bytes at a time, which reads one byte past the last U (or V)
+// sample of the block, so the last block of such a row is left to the scalar kernel.
+inline int VectorizableWidth(int width, int uv_pixel_stride) {
+  int blocks = uv_pixel_stride == 2 ? (width - 1) / 16 : width / 16;
+  return blocks < 0 ? 0 : blocks * 16;
+}
+
+}
+
+#endif //CAMERAMOTIONTRACKER_YUV2RGB_ROW_H
@@ -0,0 +1,98 @@
+// yuv2rgb_row_neon.cc
+
+#include "yuv2rgb_row.h"
+
+#if defined(YUV2RGB_HAS_NEON)
+
+#include <arm_neon.h>
+
+namespace cameramotiontracker {
+
+// Centers 8 chroma samples around zero and scales them by 64, so that vqdmulh by a
+// Q9 coefficient yields (c * coefficient) >> 9.
+static inline int16x8_t ScaleChroma(uint8x8_t c) {
+  int16x8_t centered = vsubq_s16(vreinterpretq_s16_u16(vmovl_u8(c)), vdupq_n_s16(128));
+  return vshlq_n_s16(centered, 6);
+}
+
+static inline uint8x16_t AddTerm(uint8x16_t y, int16x8x2_t term, bool subtract) {
+  int16x8_t y_low = vreinterpretq_s16_u16(vmovl_u8(vget_low_u8(y)));
+  int16x8_t y_high = vreinterpretq_s16_u16(vmovl_u8(vget_high_u8(y)));
+  if (subtract) {
+    return vcombine_u8(vqmovun_s16(vsubq_s16(y_low, term.val[0])),
+                       vqmovun_s16(vsubq_s16(y_high, term.val[1])));
+  }
+  return vcombine_u8(vqmovun_s16(vaddq_s16(y_low, term.val[0])),
+                     vqmovun_s16(vaddq_s16(y_high, term.val[1])));
+}
+
+static inline void StoreBlock(const uint8_t* y_row, int16x8x2_t r_term, int16x8x2_t g_term,
+                              int16x8x2_t b_term, uint8_t* out, PixelLayout layout) {
+  uint8x16_t y = vld1q_u8(y_row);
+  uint8x16_t r = AddTerm(y, r_term, false);
+  uint8x16_t g = AddTerm(y, g_term, true);
+  uint8x16_t b = AddTerm(y, b_term, false);
+  switch (layout) {
+    case kPixelLayoutArgb: {
+      uint8x16x4_t bgra = {{b, g, r, vdupq_n_u8(255)}};
+      vst4q_u8(out, bgra);
+      break;
+    }
+    case kPixelLayoutRgb: {
+      uint8x16x3_t rgb = {{r, g, b}};
+      vst3q_u8(out, rgb);
+      break;
+    }
+    case kPixelLayoutBgr: {
+      uint8x16x3_t bgr = {{b, g, r}};
+      vst3q_u8(out, bgr);
+      break;
+    }
+  }
+}
+
+int ConvertRowPairNeon(const uint8_t* y_row0, const uint8_t* y_row1,
+                       const uint8_t* u_row, const uint8_t* v_row, int uv_pixel_stride,
+                       uint8_t* out_row0, uint8_t* out_row1, int width,
+                       PixelLayout layout) {
+  const int end = VectorizableWidth(width, uv_pixel_stride);
+  const int out_step = 16 * BytesPerPixel(layout);
+  const int16x8_t vr = vdupq_n_s16(kCoefficientVr);
+  const int16x8_t ug = vdupq_n_s16(kCoefficientUg);
+  const int16x8_t vg = vdupq_n_s16(kCoefficientVg);
+  const int16x8_t ub = vdupq_n_s16(kCoefficientUb);
+
+  for (int x = 0; x < end; x += 16) {
+    // 8 chroma samples serve 16 pixels of both rows
+    uint8x8_t u8, v8;
+    if (uv_pixel_stride == 2) {
+      u8 = vld2_u8(u_row + x).val[0];
+      v8 = vld2_u8(v_row + x).val[0];
+    } else {
+      u8 = vld1_u8(u_row + x / 2);
+      v8 = vld1_u8(v_row + x / 2);
+    }
+    int16x8_t u = ScaleChroma(u8);
+    int16x8_t v = ScaleChroma(v8);
+
+    int16x8_t r = vqdmulhq_s16(v, vr);
+    int16x8_t g = vaddq_s16(vqdmulhq_s16(u, ug), vqdmulhq_s16(v, vg));
+    int16x8_t b = vqdmulhq_s16(u, ub);
+    // duplicate each term for the two horizontal neighbours sharing the sample
+    int16x8x2_t r_term = vzipq_s16(r, r);
+    int16x8x2_t g_term = vzipq_s16(g, g);
+    int16x8x2_t b_term = vzipq_s16(b, b);
+
+    StoreBlock(y_row0 + x, r_term, g_term, b_term, out_row0, layout);
+    out_row0 += out_step;
+    if (y_row1 != nullptr) {
+      StoreBlock(y_row1 + x, r_term, g_term, b_term, out_row1, layout);
+      out_row1 += out_step;
+    }
+  }
+  return end;
+}
+
+}
+
+#endif
@@ -0,0 +1,103 @@
+// yuv2rgb_row_sse2.cc
+//
+// x86 counterpart of yuv2rgb_row_neon.cc. It mainly exists so that the vector path can be
+// tested and benchmarked on a development host, and for x86 emulator images.
+
+#include "yuv2rgb_row.h"
+
+#if defined(YUV2RGB_HAS_SSE2)
+
+#include <emmintrin.h>
+#include <string.h>
+
+namespace cameramotiontracker {
+
+// Loads 8 chroma samples as 16 bit lanes, centered around zero and scaled by 128, so that
+// pmulhw by a Q9 coefficient yields (c * coefficient) >> 9.
+static inline __m128i LoadChroma(const uint8_t* row, int x, int uv_pixel_stride) {
+  __m128i c;
+  if (uv_pixel_stride == 2) {
+    // keep the even bytes of 16 interleaved bytes
+    c = _mm_and_si128(_mm_loadu_si128(reinterpret_cast<const __m128i*>(row + x)),
+                      _mm_set1_epi16(0x00ff));
+  } else {
+    c = _mm_unpacklo_epi8(_mm_loadl_epi64(reinterpret_cast<const __m128i*>(row + x / 2)),
+                          _mm_setzero_si128());
+  }
+  return _mm_slli_epi16(_mm_sub_epi16(c, _mm_set1_epi16(128)), 7);
+}
+
+static inline void StoreBlock(const uint8_t* y_row, const __m128i r_term[2],
+                              const __m128i g_term[2], const __m128i b_term[2],
+                              uint8_t* out, PixelLayout layout) {
+  const __m128i zero = _mm_setzero_si128();
+  __m128i y = _mm_loadu_si128(reinterpret_cast<const __m128i*>(y_row));
+  __m128i y_low = _mm_unpacklo_epi8(y, zero);
+  __m128i y_high = _mm_unpackhi_epi8(y, zero);
+  __m128i r = _mm_packus_epi16(_mm_add_epi16(y_low, r_term[0]), _mm_add_epi16(y_high, r_term[1]));
+  __m128i g = _mm_packus_epi16(_mm_sub_epi16(y_low, g_term[0]), _mm_sub_epi16(y_high, g_term[1]));
+  __m128i b = _mm_packus_epi16(_mm_add_epi16(y_low, b_term[0]), _mm_add_epi16(y_high, b_term[1]));
+
+  // interleave into 4 byte pixels, for 3 channel layouts the alpha lane is dropped below
+  __m128i a = _mm_set1_epi8(static_cast<char>(0xff));
+  __m128i first = layout == kPixelLayoutRgb ? r : b;
+  __m128i third = layout == kPixelLayoutRgb ? b : r;
+  __m128i fg_low = _mm_unpacklo_epi8(first, g);
+  __m128i fg_high = _mm_unpackhi_epi8(first, g);
+  __m128i ta_low = _mm_unpacklo_epi8(third, a);
+  __m128i ta_high = _mm_unpackhi_epi8(third, a);
+  __m128i pixels[4] = {
+      _mm_unpacklo_epi16(fg_low, ta_low), _mm_unpackhi_epi16(fg_low, ta_low),
+      _mm_unpacklo_epi16(fg_high, ta_high), _mm_unpackhi_epi16(fg_high, ta_high)};
+
+  if (layout == kPixelLayoutArgb) {
+    __m128i* dst = reinterpret_cast<__m128i*>(out);
+    for (int i = 0; i < 4; ++i) _mm_storeu_si128(dst + i, pixels[i]);
+    return;
+  }
+
+  // SSE2 has no byte shuffle, so drop the alpha byte with overlapping 4 byte stores:
+  // every store is partly overwritten by the next pixel, the last one writes 3 bytes.
+  alignas(16) uint32_t packed[16];
+  for (int i = 0; i < 4; ++i) _mm_store_si128(reinterpret_cast<__m128i*>(packed) + i, pixels[i]);
+  for (int i = 0; i < 15; ++i) memcpy(out + 3 * i, &packed[i], 4);
+  memcpy(out + 45, &packed[15], 3);
+}
+
+int ConvertRowPairSse2(const uint8_t* y_row0, const uint8_t* y_row1,
+                       const uint8_t* u_row, const uint8_t* v_row, int uv_pixel_stride,
+                       uint8_t* out_row0, uint8_t* out_row1, int width,
+                       PixelLayout layout) {
+  const int end = VectorizableWidth(width, uv_pixel_stride);
+  const int out_step = 16 * BytesPerPixel(layout);
+  const __m128i vr = _mm_set1_epi16(kCoefficientVr);
+  const __m128i ug = _mm_set1_epi16(kCoefficientUg);
+  const __m128i vg = _mm_set1_epi16(kCoefficientVg);
+  const __m128i ub = _mm_set1_epi16(kCoefficientUb);
+
+  for (int x = 0; x < end; x += 16) {
+    // 8 chroma samples serve 16 pixels of both rows
+    __m128i u = LoadChroma(u_row, x, uv_pixel_stride);
+    __m128i v = LoadChroma(v_row, x, uv_pixel_stride);
+
+    __m128i r = _mm_mulhi_epi16(v, vr);
+    __m128i g = _mm_add_epi16(_mm_mulhi_epi16(u, ug), _mm_mulhi_epi16(v, vg));
+    __m128i b = _mm_mulhi_epi16(u, ub);
+    // duplicate each term for the two horizontal neighbours sharing the sample
+    __m128i r_term[2] = {_mm_unpacklo_epi16(r, r), _mm_unpackhi_epi16(r, r)};
+    __m128i g_term[2] = {_mm_unpacklo_epi16(g, g), _mm_unpackhi_epi16(g, g)};
+    __m128i b_term[2] = {_mm_unpacklo_epi16(b, b), _mm_unpackhi_epi16(b, b)};
+
+    StoreBlock(y_row0 + x, r_term, g_term, b_term, out_row0, layout);
+    out_row0 += out_step;
+    if (y_row1 != nullptr) {
+      StoreBlock(y_row1 + x, r_term, g_term, b_term, out_row1, layout);
+      out_row1 += out_step;
+    }
+  }
+  return end;
+}
+
+}
+
+#endif
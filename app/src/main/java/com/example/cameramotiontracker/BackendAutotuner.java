@@ -0,0 +1,393 @@
+package com.example.cameramotiontracker;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the fastest inference backend and thread count for a model on this device.
+ * Every candidate runs the model on the same synthetic input, a few warm-up runs followed by timed runs,
+ * and is only eligible if its output stays close to the output of the plain CPU kernels on one thread:
+ * every keypoint score, and the position of every keypoint the reference is confident about.
+ * The synthetic input shows no person, so other keypoints land on arbitrary heatmap peaks,
+ * which reduced precision may move by a cell without being any less accurate.
+ * The choice is cached per model and device, so tuning only happens on the first launch.
+ */
+public class BackendAutotuner {
+    private static final String TAG = "BackendAutotuner";
+
+    /**
+     * Model loaded on one candidate configuration.
+     */
+    public interface Trial {
+        /**
+         * Runs one inference on the synthetic input.
+         *
+         * @param output receives the dequantized model output
+         */
+        void run(float[] output) throws Exception;
+
+        int getOutputSize();
+
+        /**
+         * Releases the model and the backend it was loaded on.
+         */
+        void close();
+    }
+
+    public interface TrialFactory {
+        Trial open(InferenceBackend backend, int threadCount) throws Exception;
+    }
+
+    /**
+     * Key value storage of tuning results, e.g. SharedPreferences.
+     */
+    public interface Store {
+        String get(String key);
+
+        void put(String key, String value);
+    }
+
+    // output of this configuration is the reference other candidates are checked against
+    public static final Config REFERENCE = new Config(InferenceBackend.Cpu.NAME, 1);
+
+    private final TrialFactory mTrialFactory;
+    private final LongSupplier mClock;
+    private int mWarmupRuns = 3;
+    private int mTimedRuns = 10;
+    private float mTolerance = 0.02f;
+
+    /**
+     * Creates an autotuner running the given model through TensorFlow Lite interpreters.
+     */
+    public BackendAutotuner(ByteBuffer model) {
+        this(new InterpreterTrialFactory(model), System::nanoTime);
+    }
+
+    /**
+     * @param trialFactory loads the model on a candidate
+     * @param clock time in nanoseconds
+     */
+    public BackendAutotuner(TrialFactory trialFactory, LongSupplier clock) {
+        mTrialFactory = trialFactory;
+        mClock = clock;
+    }
+
+    public void setWarmupRuns(int warmupRuns) {
+        mWarmupRuns = warmupRuns;
+    }
+
+    public void setTimedRuns(int timedRuns) {
+        if (timedRuns < 1) {
+            throw new IllegalArgumentException("Invalid number of timed runs " + timedRuns);
+        }
+        mTimedRuns = timedRuns;
+    }
+
+    /**
+     * Sets the largest absolute difference to the reference output a candidate may have
+     * in any keypoint score and in the normalized position of any confident keypoint.
+     */
+    public void setTolerance(float tolerance) {
+        mTolerance = tolerance;
+    }
+
+    /**
+     * Returns the cached choice stored under the key, or tunes the candidates and stores the choice.
+     */
+    public Config loadOrTune(Store store, String key, List<Config> candidates) throws Exception {
+        Config cached = Config.parse(store.get(key));
+        if (cached != null) {
+            return cached;
+        }
+        Config tuned = tune(candidates);
+        store.put(key, tuned.toString());
+        return tuned;
+    }
+
+    /**
+     * Benchmarks every candidate and returns the one with the lowest median latency among those
+     * matching the reference output, or the reference itself if none does.
+     *
+     * @throws Exception if the reference configuration cannot run the model
+     */
+    public Config tune(List<Config> candidates) throws Exception {
+        InferenceBackend referenceBackend = InferenceBackend.fromName(REFERENCE.getBackendName());
+        Trial referenceTrial = mTrialFactory.open(referenceBackend, REFERENCE.getThreadCount());
+        float[] reference = new float[referenceTrial.getOutputSize()];
+        float[] output = new float[reference.length];
+        try {
+            referenceTrial.run(reference);
+        } finally {
+            referenceTrial.close();
+        }
+
+        Config best = REFERENCE;
+        long bestLatency = Long.MAX_VALUE;
+        for (Config candidate : candidates) {
+            InferenceBackend backend = InferenceBackend.fromName(candidate.getBackendName());
+            if (!backend.isSupported()) {
+                System.err.println(TAG + ": " + candidate + " is not supported on this device");
+                continue;
+            }
+            long latency;
+            try {
+                latency = measure(backend, candidate.getThreadCount(), output);
+            } catch (Exception | LinkageError e) {
+                // e.g. delegate failing to prepare some operation of the model
+                System.err.println(TAG + ": " + candidate + " cannot run the model: " + e);
+                continue;
+            }
+            if (latency < bestLatency && maxDifference(reference, output) <= mTolerance) {
+                best = candidate;
+                bestLatency = latency;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the median latency in nanoseconds of the candidate and leaves its last output in the given array.
+     */
+    private long measure(InferenceBackend backend, int threadCount, float[] output) throws Exception {
+        Trial trial;
+        try {
+            trial = mTrialFactory.open(backend, threadCount);
+        } catch (Exception | LinkageError e) {
+            backend.close();
+            throw e;
+        }
+        try {
+            for (int i = 0; i < mWarmupRuns; i++) {
+                trial.run(output);
+            }
+            long[] latencies = new long[mTimedRuns];
+            for (int i = 0; i < mTimedRuns; i++) {
+                long start = mClock.getAsLong();
+                trial.run(output);
+                latencies[i] = mClock.getAsLong() - start;
+            }
+            Arrays.sort(latencies);
+            return latencies[latencies.length / 2];
+        } finally {
+            trial.close();
+        }
+    }
+
+    /**
+     * Returns the largest difference of the output to the reference in any keypoint score,
+     * or in any coordinate of a keypoint the reference scores at least CropRegion.MIN_KEYPOINT_SCORE.
+     * Both hold [y, x, score] of every keypoint.
+     */
+    static float maxDifference(float[] reference, float[] output) {
+        float max = 0;
+        for (int i = 0; i + 2 < reference.length; i += 3) {
+            float difference = Math.abs(reference[i + 2] - output[i + 2]);
+            if (reference[i + 2] >= CropRegion.MIN_KEYPOINT_SCORE) {
+                difference = Math.max(difference, Math.max(
+                        Math.abs(reference[i] - output[i]), Math.abs(reference[i + 1] - output[i + 1])));
+            }
+            if (Float.isNaN(difference) || Float.isNaN(output[i]) || Float.isNaN(output[i + 1])) {
+                return Float.POSITIVE_INFINITY;
+            }
+            max = Math.max(max, difference);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the candidates worth trying on a device: the CPU backends with 1, 2, 4, ... up to maxThreads threads,
+     * and the delegates with maxThreads threads for the operations they leave to the CPU.
+     */
+    public static List<Config> defaultCandidates(int maxThreads) {
+        List<Config> candidates = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            candidates.add(new Config(InferenceBackend.Cpu.NAME, threads));
+            candidates.add(new Config(InferenceBackend.Cpu.NAME_XNNPACK, threads));
+        }
+        candidates.add(new Config(InferenceBackend.Nnapi.NAME, maxThreads));
+        candidates.add(new Config(InferenceBackend.Gpu.NAME, maxThreads));
+        return candidates;
+    }
+
+    /**
+     * Returns a policy running the chosen configuration, falling back to the default backends.
+     */
+    public static InferenceBackendPolicy toPolicy(Config config) {
+        List<String> names = new ArrayList<>();
+        names.add(config.getBackendName());
+        for (String name : InferenceBackendPolicy.DEFAULT_BACKENDS) {
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+        return new InferenceBackendPolicy(config.getThreadCount(), names.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the key a tuning result is stored under. Another model file or another device build has its own key.
+     */
+    public static String cacheKey(ByteBuffer model, String deviceFingerprint) {
+        return "backend:" + sha256(model) + ":" + deviceFingerprint;
+    }
+
+    static String sha256(ByteBuffer data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(data.duplicate());
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Backend name and thread count, stored as "name:threads".
+     */
+    public static class Config {
+        private final String mBackendName;
+        private final int mThreadCount;
+
+        public Config(String backendName, int threadCount) {
+            mBackendName = backendName;
+            mThreadCount = threadCount;
+        }
+
+        public String getBackendName() {
+            return mBackendName;
+        }
+
+        public int getThreadCount() {
+            return mThreadCount;
+        }
+
+        /**
+         * Parses the string form, returns null if the value is missing or malformed.
+         */
+        public static Config parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            int separator = value.lastIndexOf(':');
+            if (separator <= 0) {
+                return null;
+            }
+            try {
+                String name = value.substring(0, separator);
+                InferenceBackend.fromName(name);
+                int threads = Integer.parseInt(value.substring(separator + 1));
+                return threads > 0 ? new Config(name, threads) : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Config)) {
+                return false;
+            }
+            Config other = (Config) o;
+            return mBackendName.equals(other.mBackendName) && mThreadCount == other.mThreadCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return mBackendName.hashCode() * 31 + mThreadCount;
+        }
+
+        @Override
+        public String toString() {
+            return mBackendName + ":" + mThreadCount;
+        }
+    }
+
+    /**
+     * Runs the model in a TensorFlow Lite interpreter on a smooth synthetic image,
+     * which unlike noise gives every backend a clear and therefore comparable answer
+     * for the keypoints the model finds in it.
+     */
+    private static class InterpreterTrialFactory implements TrialFactory {
+        private final ByteBuffer mModel;
+
+        InterpreterTrialFactory(ByteBuffer model) {
+            mModel = model;
+        }
+
+        @Override
+        public Trial open(InferenceBackend backend, int threadCount) {
+            Interpreter interpreter = new Interpreter(mModel, backend.createOptions(threadCount));
+            TensorSpec outputSpec;
+            ByteBuffer input;
+            ByteBuffer outputBuffer;
+            try {
+                TensorSpec inputSpec = PoseEstimator.toTensorSpec(interpreter.getInputTensor(0));
+                outputSpec = PoseEstimator.toTensorSpec(interpreter.getOutputTensor(0));
+                input = syntheticInput(inputSpec);
+                outputBuffer = ByteBuffer.allocateDirect(outputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+            } catch (RuntimeException | LinkageError e) {
+                interpreter.close();
+                throw e;
+            }
+            return new Trial() {
+                @Override
+                public void run(float[] output) {
+                    input.rewind();
+                    outputBuffer.rewind();
+                    interpreter.run(input, outputBuffer);
+                    outputSpec.readValues(outputBuffer, output);
+                }
+
+                @Override
+                public int getOutputSize() {
+                    return outputSpec.getElementCount();
+                }
+
+                @Override
+                public void close() {
+                    interpreter.close();
+                    backend.close();
+                }
+            };
+        }
+
+        private static ByteBuffer syntheticInput(TensorSpec spec) {
+            int height = spec.getDimension(1);
+            int width = spec.getDimension(2);
+            int channels = spec.getDimension(3);
+            float scale = spec.getInputValueScale(PoseEstimator.DEFAULT_INPUT_MEAN, PoseEstimator.DEFAULT_INPUT_STD);
+            float offset = spec.getInputValueOffset(PoseEstimator.DEFAULT_INPUT_MEAN, PoseEstimator.DEFAULT_INPUT_STD);
+            ByteBuffer input = ByteBuffer.allocateDirect(spec.getByteSize()).order(ByteOrder.nativeOrder());
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    for (int c = 0; c < channels; c++) {
+                        // diagonal gradient, rotated per channel
+                        int pixel = (x * 255 / width + y * 255 / height + c * 85) / 2 % 256;
+                        float value = pixel * scale + offset;
+                        if (spec.getElementType() == TensorSpec.ELEMENT_TYPE_FLOAT32) {
+                            input.putFloat(value);
+                        } else if (spec.getElementType() == TensorSpec.ELEMENT_TYPE_INT8) {
+                            input.put((byte) Math.max(-128, Math.min(127, Math.round(value))));
+                        } else {
+                            input.put((byte) Math.max(0, Math.min(255, Math.round(value))));
+                        }
+                    }
+                }
+            }
+            input.rewind();
+            return input;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Determines crop regions ahead of a moving body. The velocity of the hip center is tracked over consecutive poses,
+ * the crop region is moved along it by the time until the frames it is used for, and grown with the speed
+ * to leave room for a change of direction. A body at rest gets the crop region of CropRegion.determine.
+ */
+public class CropPredictor {
+    // the pipeline preprocesses the next frame while inferring this one, so a crop region is first used two frames later
+    public static final float DEFAULT_LEAD_FRAMES = 2.0f;
+    // share of the predicted movement added on every side of the crop region
+    public static final float DEFAULT_EXPANSION = 1.0f;
+    // poses further apart than this say nothing about the velocity
+    public static final long DEFAULT_MAX_GAP_NANOS = 250000000L;
+    // weight of the latest measurement in the tracked velocity and frame interval
+    private static final double SMOOTHING = 0.5;
+
+    private final float mLeadFrames;
+    private final float mExpansion;
+    private final long mMaxGapNanos;
+
+    private boolean mTracking;
+    private boolean mMoving;
+    private long mLastTimestamp;
+    private double mLastY;
+    private double mLastX;
+    // pixels per second
+    private double mVelocityY;
+    private double mVelocityX;
+    private double mFrameInterval;
+
+    public CropPredictor() {
+        this(DEFAULT_LEAD_FRAMES, DEFAULT_EXPANSION, DEFAULT_MAX_GAP_NANOS);
+    }
+
+    /**
+     * @param leadFrames frames between the pose and the first frame its crop region is used for
+     * @param expansion share of the predicted movement added on every side of the crop region
+     * @param maxGapNanos poses further apart say nothing about the velocity
+     */
+    public CropPredictor(float leadFrames, float expansion, long maxGapNanos) {
+        mLeadFrames = leadFrames;
+        mExpansion = expansion;
+        mMaxGapNanos = maxGapNanos;
+    }
+
+    /**
+     * Forgets the tracked velocity, e.g. when the camera restarts.
+     */
+    public void reset() {
+        mTracking = false;
+        mMoving = false;
+    }
+
+    /**
+     * Writes the crop region for the frames after the pose into the given one. Poses must come in timestamp order.
+     */
+    public void determine(Pose pose, int imageHeight, int imageWidth, double[] cropRegion) {
+        if (!CropRegion.torsoVisible(pose)) {
+            reset();
+            CropRegion.init(imageHeight, imageWidth, cropRegion);
+            return;
+        }
+        double y = ((double) pose.getY(Pose.LEFT_HIP) + pose.getY(Pose.RIGHT_HIP)) / 2;
+        double x = ((double) pose.getX(Pose.LEFT_HIP) + pose.getX(Pose.RIGHT_HIP)) / 2;
+        long elapsed = pose.getTimestamp() - mLastTimestamp;
+        if (mTracking && elapsed > 0 && elapsed <= mMaxGapNanos) {
+            double interval = elapsed / 1e9;
+            double velocityY = (y - mLastY) / interval;
+            double velocityX = (x - mLastX) / interval;
+            if (mMoving) {
+                mVelocityY += SMOOTHING * (velocityY - mVelocityY);
+                mVelocityX += SMOOTHING * (velocityX - mVelocityX);
+                mFrameInterval += SMOOTHING * (interval - mFrameInterval);
+            } else {
+                mVelocityY = velocityY;
+                mVelocityX = velocityX;
+                mFrameInterval = interval;
+                mMoving = true;
+            }
+        } else {
+            mMoving = false;
+        }
+        mTracking = true;
+        mLastTimestamp = pose.getTimestamp();
+        mLastY = y;
+        mLastX = x;
+
+        if (!mMoving) {
+            CropRegion.determine(pose, imageHeight, imageWidth, cropRegion);
+            return;
+        }
+        double lead = mFrameInterval * mLeadFrames;
+        double shiftY = mVelocityY * lead;
+        double shiftX = mVelocityX * lead;
+        double margin = Math.hypot(shiftY, shiftX) * mExpansion;
+        CropRegion.determine(pose, imageHeight, imageWidth, shiftY, shiftX, margin, cropRegion);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Crop region math of the PoseEstimator, free of Android and OpenCV so that it also runs on a host JVM.
+ * A crop region is a double[SIZE] of Y_MIN, X_MIN, Y_MAX, X_MAX, HEIGHT and WIDTH, normalized to the image size.
+ */
+final class CropRegion {
+    static final int Y_MIN = 0;
+    static final int X_MIN = 1;
+    static final int Y_MAX = 2;
+    static final int X_MAX = 3;
+    static final int HEIGHT = 4;
+    static final int WIDTH = 5;
+    static final int SIZE = 6;
+
+    static final double MIN_KEYPOINT_SCORE = 0.5;
+
+    private CropRegion() {}
+
+    /**
+     * Returns the square crop region centered on the image which covers all of it.
+     */
+    static double[] init(int imageHeight, int imageWidth) {
+        double[] region = new double[SIZE];
+        init(imageHeight, imageWidth, region);
+        return region;
+    }
+
+    static void init(int imageHeight, int imageWidth, double[] region) {
+        if (imageWidth > imageHeight) {
+            region[HEIGHT] = 1.0 * imageWidth / imageHeight;
+            region[WIDTH] = 1.0;
+            region[Y_MIN] = (1.0 - region[HEIGHT]) / 2;
+            region[X_MIN] = 0.0;
+        } else {
+            region[HEIGHT] = 1.0;
+            region[WIDTH] = 1.0 * imageHeight / imageWidth;
+            region[Y_MIN] = 0.0;
+            region[X_MIN] = (1.0 - region[WIDTH]) / 2;
+        }
+        region[Y_MAX] = region[Y_MIN] + region[HEIGHT];
+        region[X_MAX] = region[X_MIN] + region[WIDTH];
+    }
+
+    /**
+     * Maps model output, which is normalized to the crop region, back to the image.
+     */
+    static void mapKeypoints(float[] output, double[] cropRegion, int imageHeight, int imageWidth, Pose pose) {
+        for (int i = 0; i < pose.getKeypointCount(); i++) {
+            pose.set(i, (float) ((cropRegion[Y_MIN] + output[i * 3] * cropRegion[HEIGHT]) * imageHeight),
+                    (float) ((cropRegion[X_MIN] + output[i * 3 + 1] * cropRegion[WIDTH]) * imageWidth),
+                    output[i * 3 + 2]);
+        }
+    }
+
+    static boolean torsoVisible(Pose pose) {
+        return (pose.getScore(Pose.LEFT_HIP) > MIN_KEYPOINT_SCORE || pose.getScore(Pose.RIGHT_HIP) > MIN_KEYPOINT_SCORE)
+                && (pose.getScore(Pose.LEFT_SHOULDER) > MIN_KEYPOINT_SCORE
+                || pose.getScore(Pose.RIGHT_SHOULDER) > MIN_KEYPOINT_SCORE);
+    }
+
+    /**
+     * Returns the largest vertical or horizontal distance of a confident keypoint from the center.
+     */
+    static double determineBodyRange(Pose pose, double centerY, double centerX) {
+        double maxBodyRange = 0.0;
+        for (int i = 0; i < pose.getKeypointCount(); i++) {
+            if (pose.getScore(i) < MIN_KEYPOINT_SCORE) {
+                continue;
+            }
+            maxBodyRange = Math.max(maxBodyRange, Math.abs(centerY - pose.getY(i)));
+            maxBodyRange = Math.max(maxBodyRange, Math.abs(centerX - pose.getX(i)));
+        }
+        return maxBodyRange;
+    }
+
+    /**
+     * Returns the square crop region around the body for the next frame,
+     * or the whole image if the torso is not visible.
+     */
+    static double[] determine(Pose pose, int imageHeight, int imageWidth) {
+        double[] cropRegion = new double[SIZE];
+        determine(pose, imageHeight, imageWidth, cropRegion);
+        return cropRegion;
+    }
+
+    /**
+     * Writes the crop region determine returns into the given one.
+     */
+    static void determine(Pose pose, int imageHeight, int imageWidth, double[] cropRegion) {
+        determine(pose, imageHeight, imageWidth, 0.0, 0.0, 0.0, cropRegion);
+    }
+
+    /**
+     * Writes the crop region around the body into the given one, moved and grown for where the body is expected
+     * in the frames it is used for.
+     *
+     * @param shiftY pixels the center of the crop region is moved down, within the image
+     * @param shiftX pixels the center of the crop region is moved right, within the image
+     * @param margin pixels added on every side of the crop region
+     */
+    static void determine(Pose pose, int imageHeight, int imageWidth, double shiftY, double shiftX, double margin,
+                          double[] cropRegion) {
+        if (!torsoVisible(pose)) {
+            init(imageHeight, imageWidth, cropRegion);
+            return;
+        }
+        double hipY = ((double) pose.getY(Pose.LEFT_HIP) + pose.getY(Pose.RIGHT_HIP)) / 2;
+        double hipX = ((double) pose.getX(Pose.LEFT_HIP) + pose.getX(Pose.RIGHT_HIP)) / 2;
+        if (hipX < 0 || hipY < 0) {
+            init(imageHeight, imageWidth, cropRegion);
+            return;
+        }
+        double centerY = Math.min(Math.max(hipY + shiftY, 0.0), imageHeight);
+        double centerX = Math.min(Math.max(hipX + shiftX, 0.0), imageWidth);
+
+        double cropLengthHalfByKeypoint = determineBodyRange(pose, hipY, hipX) * 1.2 + margin;
+        double cropLengthHalfByCenter = Math.max(Math.max(centerX, imageWidth - centerX),
+                Math.max(centerY, imageHeight - centerY));
+        double cropLengthHalf = Math.min(cropLengthHalfByKeypoint, cropLengthHalfByCenter);
+
+        if (cropLengthHalf > Math.max(imageHeight, imageWidth) / 2.0) {
+            init(imageHeight, imageWidth, cropRegion);
+            return;
+        }
+        cropRegion[Y_MIN] = (centerY - cropLengthHalf) / imageHeight;
+        cropRegion[X_MIN] = (centerX - cropLengthHalf) / imageWidth;
+        cropRegion[Y_MAX] = (centerY + cropLengthHalf) / imageHeight;
+        cropRegion[X_MAX] = (centerX + cropLengthHalf) / imageWidth;
+        cropRegion[HEIGHT] = (cropLengthHalf * 2) / imageHeight;
+        cropRegion[WIDTH] = (cropLengthHalf * 2) / imageWidth;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.cameramotiontracker;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.BackgroundSubtractorMOG2;
+import org.opencv.video.Video;
+
+/**
+ * Measures how much of the frame differs from the learned background, for the PresenceDetector.
+ * The Y plane of the frame is taken from its zero-copy LumaFrameView, downscaled by area averaging and fed into
+ * a Gaussian mixture background model, which also learns flickering lights and swaying curtains.
+ * Specks of foreground are removed by a morphological opening before the foreground pixels are counted.
+ */
+public class ForegroundDetector {
+    public static final int DEFAULT_DOWNSCALE = 8;
+    // frames the background model remembers, about 10 seconds at 30 frames per second
+    private static final int HISTORY = 300;
+    private static final double VARIANCE_THRESHOLD = 16;
+
+    private final int mDownscale;
+    private final BackgroundSubtractorMOG2 mBackground = Video.createBackgroundSubtractorMOG2(HISTORY, VARIANCE_THRESHOLD, false);
+    private final Mat mKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+    private final Size mSize = new Size();
+    private final Mat mFrame = new Mat();
+    private final Mat mForeground = new Mat();
+
+    public ForegroundDetector() {
+        this(DEFAULT_DOWNSCALE);
+    }
+
+    /**
+     * @param downscale factor by which the Y plane is downscaled before it is compared with the background
+     */
+    public ForegroundDetector(int downscale) {
+        mDownscale = downscale;
+    }
+
+    /**
+     * Learns the frame into the background model and returns the share of it in the foreground.
+     */
+    public float foreground(YuvFrame frame, LumaFrameView view) {
+        mSize.width = Math.max(1, frame.getWidth() / mDownscale);
+        mSize.height = Math.max(1, frame.getHeight() / mDownscale);
+        Imgproc.resize(view.wrap(frame), mFrame, mSize, 0, 0, Imgproc.INTER_AREA);
+        mBackground.apply(mFrame, mForeground);
+        Imgproc.morphologyEx(mForeground, mForeground, Imgproc.MORPH_OPEN, mKernel);
+        return (float) Core.countNonZero(mForeground) / mForeground.total();
+    }
+
+    public void release() {
+        mKernel.release();
+        mFrame.release();
+        mForeground.release();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Hand-over of frames from one pipeline stage to the next.
+ *
+ * @see FramePipeline
+ */
+public interface FrameChannel<T> {
+
+    /**
+     * Hands the item over without blocking. Whatever the channel gives up in return is dropped
+     * and belongs to the caller again.
+     *
+     * @return null if the item was taken without dropping anything, the item itself if a bounded channel is full,
+     *         or a stale item it replaced
+     */
+    T offer(T item);
+
+    /**
+     * Returns the next item without blocking, null if there is none.
+     */
+    T poll();
+
+    /**
+     * Waits for the next item.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted, e.g. when the pipeline stops
+     */
+    T take() throws InterruptedException;
+}
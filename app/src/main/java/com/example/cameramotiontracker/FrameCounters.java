@@ -0,0 +1,123 @@
+package com.example.cameramotiontracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the frames of the camera went. Every received frame ends up in exactly one of the other counters,
+ * once it has left the pipeline:
+ * received = dropped stale + dropped without slot + skipped static + skipped empty + dropped before inference
+ * + dropped before render + failed + processed.
+ */
+public class FrameCounters {
+    private final AtomicLong mReceived = new AtomicLong();
+    // replaced by a newer frame while waiting in the ImageReader
+    private final AtomicLong mDroppedStale = new AtomicLong();
+    // no free frame slot to preprocess into
+    private final AtomicLong mDroppedNoSlot = new AtomicLong();
+    // nothing changed since the last processed frame, see MotionGate
+    private final AtomicLong mSkippedStatic = new AtomicLong();
+    // nobody likely in view, see PresenceDetector
+    private final AtomicLong mSkippedEmpty = new AtomicLong();
+    // replaced by a newer frame while waiting for inference
+    private final AtomicLong mDroppedBeforeInference = new AtomicLong();
+    // replaced by a newer frame while waiting for rendering
+    private final AtomicLong mDroppedBeforeRender = new AtomicLong();
+    private final AtomicLong mFailed = new AtomicLong();
+    private final AtomicLong mProcessed = new AtomicLong();
+    // of the processed frames, the ones whose keypoints were tracked rather than inferred
+    private final AtomicLong mTracked = new AtomicLong();
+
+    void countReceived() {
+        mReceived.incrementAndGet();
+    }
+
+    void countDroppedStale() {
+        mDroppedStale.incrementAndGet();
+    }
+
+    void countDroppedNoSlot() {
+        mDroppedNoSlot.incrementAndGet();
+    }
+
+    void countSkippedStatic() {
+        mSkippedStatic.incrementAndGet();
+    }
+
+    void countSkippedEmpty() {
+        mSkippedEmpty.incrementAndGet();
+    }
+
+    void countDroppedBeforeInference() {
+        mDroppedBeforeInference.incrementAndGet();
+    }
+
+    void countDroppedBeforeRender() {
+        mDroppedBeforeRender.incrementAndGet();
+    }
+
+    void countFailed() {
+        mFailed.incrementAndGet();
+    }
+
+    void countProcessed() {
+        mProcessed.incrementAndGet();
+    }
+
+    void countTracked() {
+        mTracked.incrementAndGet();
+    }
+
+    public long getReceived() {
+        return mReceived.get();
+    }
+
+    public long getDroppedStale() {
+        return mDroppedStale.get();
+    }
+
+    public long getDroppedNoSlot() {
+        return mDroppedNoSlot.get();
+    }
+
+    public long getSkippedStatic() {
+        return mSkippedStatic.get();
+    }
+
+    public long getSkippedEmpty() {
+        return mSkippedEmpty.get();
+    }
+
+    public long getDroppedBeforeInference() {
+        return mDroppedBeforeInference.get();
+    }
+
+    public long getDroppedBeforeRender() {
+        return mDroppedBeforeRender.get();
+    }
+
+    public long getFailed() {
+        return mFailed.get();
+    }
+
+    public long getProcessed() {
+        return mProcessed.get();
+    }
+
+    public long getTracked() {
+        return mTracked.get();
+    }
+
+    @Override
+    public String toString() {
+        return "received " + getReceived()
+                + ", dropped stale " + getDroppedStale()
+                + ", dropped without slot " + getDroppedNoSlot()
+                + ", skipped static " + getSkippedStatic()
+                + ", skipped empty " + getSkippedEmpty()
+                + ", dropped before inference " + getDroppedBeforeInference()
+                + ", dropped before render " + getDroppedBeforeRender()
+                + ", failed " + getFailed()
+                + ", processed " + getProcessed()
+                + " (tracked " + getTracked() + ")";
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.cameramotiontracker;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Measures how much of the scene changed between camera frames, for the MotionGate.
+ * The Y plane of the frame is taken from its zero-copy LumaFrameView and downscaled by area averaging,
+ * which also evens out sensor noise, then compared pixel by pixel with the reference frame.
+ */
+public class FrameDifferencer {
+    private final int mDownscale;
+    private final int mPixelThreshold;
+    private final Size mSize = new Size();
+    // the downscaled frame last measured and the reference, swapped by setReference
+    private Mat mFrame = new Mat();
+    private Mat mReference = new Mat();
+    private final Mat mDifference = new Mat();
+    private boolean mHasReference;
+
+    /**
+     * @param downscale factor by which the Y plane is downscaled before it is compared
+     * @param pixelThreshold difference of luma values from which a downscaled pixel counts as changed
+     */
+    public FrameDifferencer(int downscale, int pixelThreshold) {
+        mDownscale = downscale;
+        mPixelThreshold = pixelThreshold;
+    }
+
+    /**
+     * Returns the share of pixels of the frame which changed since the reference, 1 without a reference.
+     */
+    public float difference(YuvFrame frame, LumaFrameView view) {
+        mSize.width = Math.max(1, frame.getWidth() / mDownscale);
+        mSize.height = Math.max(1, frame.getHeight() / mDownscale);
+        Imgproc.resize(view.wrap(frame), mFrame, mSize, 0, 0, Imgproc.INTER_AREA);
+        if (!mHasReference || mReference.cols() != mFrame.cols() || mReference.rows() != mFrame.rows()) {
+            return 1.0f;
+        }
+        Core.absdiff(mFrame, mReference, mDifference);
+        Imgproc.threshold(mDifference, mDifference, mPixelThreshold, 255, Imgproc.THRESH_BINARY);
+        return (float) Core.countNonZero(mDifference) / mDifference.total();
+    }
+
+    /**
+     * Makes the frame last passed to difference the reference of the next ones.
+     */
+    public void setReference() {
+        Mat reference = mReference;
+        mReference = mFrame;
+        mFrame = reference;
+        mHasReference = true;
+    }
+
+    public void release() {
+        mFrame.release();
+        mReference.release();
+        mDifference.release();
+    }
+}
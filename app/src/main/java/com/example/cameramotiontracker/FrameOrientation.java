@@ -0,0 +1,78 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Maps points between a frame as the camera delivers it and the frame oriented as in YuvFrame.setOrientation,
+ * rotated clockwise and then mirrored horizontally, the same way the native conversions sample it.
+ * Points are x, y pairs one after the other in continuous pixel coordinates, the top left corner of the image at 0, 0.
+ */
+final class FrameOrientation {
+    private FrameOrientation() {}
+
+    /**
+     * Maps the first count points from the oriented frame to the camera frame, in place.
+     *
+     * @param width width of the camera frame
+     * @param height height of the camera frame
+     */
+    static void toCamera(float[] points, int count, int width, int height, int rotation, boolean mirror) {
+        int orientedWidth = rotation == 90 || rotation == 270 ? height : width;
+        for (int i = 0; i < count * 2; i += 2) {
+            float x = mirror ? orientedWidth - points[i] : points[i];
+            float y = points[i + 1];
+            switch (rotation) {
+                case 90:
+                    points[i] = y;
+                    points[i + 1] = height - x;
+                    break;
+                case 180:
+                    points[i] = width - x;
+                    points[i + 1] = height - y;
+                    break;
+                case 270:
+                    points[i] = width - y;
+                    points[i + 1] = x;
+                    break;
+                default:
+                    points[i] = x;
+                    points[i + 1] = y;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Maps the first count points from the camera frame to the oriented frame, in place.
+     *
+     * @param width width of the camera frame
+     * @param height height of the camera frame
+     */
+    static void toOriented(float[] points, int count, int width, int height, int rotation, boolean mirror) {
+        int orientedWidth = rotation == 90 || rotation == 270 ? height : width;
+        for (int i = 0; i < count * 2; i += 2) {
+            float x = points[i];
+            float y = points[i + 1];
+            float orientedX;
+            float orientedY;
+            switch (rotation) {
+                case 90:
+                    orientedX = height - y;
+                    orientedY = x;
+                    break;
+                case 180:
+                    orientedX = width - x;
+                    orientedY = height - y;
+                    break;
+                case 270:
+                    orientedX = y;
+                    orientedY = width - x;
+                    break;
+                default:
+                    orientedX = x;
+                    orientedY = y;
+                    break;
+            }
+            points[i] = mirror ? orientedWidth - orientedX : orientedX;
+            points[i + 1] = orientedY;
+        }
+    }
+}
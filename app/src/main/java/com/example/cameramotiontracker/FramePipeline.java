@@ -0,0 +1,326 @@
+package com.example.cameramotiontracker;
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs pose estimation on camera frames in three stages on their own threads,
+ * so that the next frame is preprocessed while the previous one is in inference and the one before is rendered:
+ * <pre>
+ * camera thread       inference thread      render thread
+ * submit: preprocess --> infer -------------> render --+
+ *    ^                     |                           |
+ *    +------------------ free slots <------------------+
+ * </pre>
+ * Stages hand FrameSlots over through LatestFrameMailboxes, which hold at most one pending frame each.
+ * A frame still waiting when the next one arrives is dropped, so a slow stage always continues with the newest
+ * frame and latency stays bounded when the camera is faster than the slowest stage. Dropped and finished slots
+ * go back to the free slots. Every frame is accounted for in the FrameCounters, and every stage records its
+ * latency into the PipelineMetrics.
+ * With frame skipping, only keyframes chosen by a FrameSkipPolicy are preprocessed and run the model;
+ * the keypoints of the frames in between are tracked from the frame before by a KeypointTracker.
+ * With a MotionGate, frames in which the scene did not change since the last processed one are skipped
+ * before preprocessing, and the last pose stays on display.
+ * With a PresenceDetector, frames of an empty scene only run a cheap ForegroundDetector instead of the model.
+ * The PoseEstimator is created, run and closed on the inference thread only, as the TFLite GPU delegate requires.
+ */
+public class FramePipeline {
+    private static final String TAG = "FramePipeline";
+
+    /**
+     * Last stage, e.g. drawing the keypoints. Runs on the render thread.
+     */
+    public interface Renderer {
+        void render(FrameSlot slot);
+    }
+
+    /**
+     * Creates the PoseEstimator of the pipeline. Runs on the inference thread, which later closes it.
+     */
+    public interface PoseEstimatorFactory {
+        PoseEstimator create();
+    }
+
+    // created by the inference thread before the constructor returns
+    private PoseEstimator mPoseEstimator;
+    private RuntimeException mPoseEstimatorFailure;
+    private final CountDownLatch mPoseEstimatorCreated = new CountDownLatch(1);
+    // released by start, so the inference thread sees everything set up before
+    private final CountDownLatch mStarted = new CountDownLatch(1);
+    private final Renderer mRenderer;
+    private final ArrayBlockingQueue<FrameSlot> mFreeSlots;
+    private final FrameChannel<FrameSlot> mInferChannel = new LatestFrameMailbox<>();
+    private final FrameChannel<FrameSlot> mRenderChannel = new LatestFrameMailbox<>();
+    private final PipelineMetrics mMetrics = new PipelineMetrics();
+    private final FrameCounters mCounters = mMetrics.getCounters();
+    // both null unless frames are skipped
+    private FrameSkipPolicy mFrameSkipPolicy;
+    private KeypointTracker mKeypointTracker;
+    // both null unless static frames are skipped
+    private MotionGate mMotionGate;
+    private FrameDifferencer mFrameDifferencer;
+    // both null unless the model waits for a person
+    private PresenceDetector mPresenceDetector;
+    private ForegroundDetector mForegroundDetector;
+    // grayscale view of the frame being submitted, only used by submit
+    private final LumaFrameView mLumaView = new LumaFrameView();
+    private Thread mInferThread;
+    private Thread mRenderThread;
+
+    // enough for a frame in and in front of both later stages, plus the one being preprocessed
+    public static final int DEFAULT_SLOT_COUNT = 5;
+
+    /**
+     * Starts the inference thread and waits until it created the PoseEstimator.
+     *
+     * @param slotCount number of frames in flight, with less than DEFAULT_SLOT_COUNT frames can be dropped for lack of a slot
+     * @throws RuntimeException what the factory threw
+     */
+    public FramePipeline(PoseEstimatorFactory poseEstimatorFactory, Renderer renderer, int slotCount) {
+        mRenderer = renderer;
+        mInferThread = new Thread(() -> runInferStage(poseEstimatorFactory), "PoseInference");
+        mInferThread.start();
+        try {
+            mPoseEstimatorCreated.await();
+        } catch (InterruptedException e) {
+            mInferThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating the pose estimator", e);
+        }
+        if (mPoseEstimatorFailure != null) {
+            throw mPoseEstimatorFailure;
+        }
+        mFreeSlots = new ArrayBlockingQueue<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            mFreeSlots.offer(mPoseEstimator.createFrameSlot());
+        }
+    }
+
+    /**
+     * Returns the PoseEstimator of the pipeline. Only its methods which do not run the model may be called
+     * off the inference thread, and none once the pipeline stopped.
+     */
+    public PoseEstimator getPoseEstimator() {
+        return mPoseEstimator;
+    }
+
+    public FrameCounters getCounters() {
+        return mCounters;
+    }
+
+    public PipelineMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Runs the model on keyframes only and tracks the keypoints in between. Call before start.
+     */
+    public void setFrameSkipping(FrameSkipPolicy policy) {
+        mFrameSkipPolicy = policy;
+        mKeypointTracker = new KeypointTracker(mPoseEstimator.getKeypointCount());
+    }
+
+    /**
+     * Skips the frames in which the scene did not change since the last processed one, see MotionGate.
+     * Call before start.
+     */
+    public void setMotionGate(MotionGate gate) {
+        mMotionGate = gate;
+        mFrameDifferencer = new FrameDifferencer(gate.getDownscale(), gate.getPixelThreshold());
+    }
+
+    /**
+     * Runs the model only while a person is likely in view, see PresenceDetector. Call before start.
+     */
+    public void setPresenceDetector(PresenceDetector detector) {
+        mPresenceDetector = detector;
+        mForegroundDetector = new ForegroundDetector();
+    }
+
+    public void start() {
+        mRenderThread = new Thread(this::runRenderStage, "PoseRender");
+        mRenderThread.start();
+        mStarted.countDown();
+    }
+
+    /**
+     * Stops the stage threads and waits until they are done, which closes the PoseEstimator.
+     * Frames in flight are discarded. Call after the camera stopped submitting frames.
+     */
+    public void stop() {
+        mMetrics.stopReporting();
+        for (Thread thread : new Thread[]{mInferThread, mRenderThread}) {
+            if (thread == null) {
+                continue;
+            }
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                Thread.currentThread().interrupt();
+            }
+        }
+        mInferThread = null;
+        mRenderThread = null;
+        if (mKeypointTracker != null) {
+            mKeypointTracker.release();
+        }
+        if (mFrameDifferencer != null) {
+            mFrameDifferencer.release();
+        }
+        if (mForegroundDetector != null) {
+            mForegroundDetector.release();
+        }
+        mLumaView.release();
+    }
+
+    /**
+     * First stage: preprocesses the frame into a free slot and passes it on to inference.
+     * Frames which only track keypoints merely have their Y plane downscaled, see KeypointTracker.prepare.
+     * Always called from the same thread, e.g. the camera's image processing thread.
+     * The frame and its buffers can be released as soon as this returns.
+     *
+     * @return false if the frame was dropped right away, because no slot is free or preprocessing failed
+     */
+    public boolean submit(YuvFrame frame) {
+        long received = System.nanoTime();
+        mCounters.countReceived();
+        FrameSlot slot = mFreeSlots.poll();
+        if (slot == null) {
+            mCounters.countDroppedNoSlot();
+            return false;
+        }
+        try {
+            if (mMotionGate != null) {
+                float changed = mFrameDifferencer.difference(frame, mLumaView);
+                if (!mMotionGate.pass(changed, frame.getTimestamp())) {
+                    mCounters.countSkippedStatic();
+                    mFreeSlots.offer(slot);
+                    return true;
+                }
+                mFrameDifferencer.setReference();
+            }
+            if (mPresenceDetector != null) {
+                float foreground = mForegroundDetector.foreground(frame, mLumaView);
+                if (!mPresenceDetector.shouldEstimate(foreground, frame.getTimestamp())) {
+                    mCounters.countSkippedEmpty();
+                    mFreeSlots.offer(slot);
+                    return true;
+                }
+            }
+            slot.mKeyframe = mFrameSkipPolicy == null || mFrameSkipPolicy.nextIsKeyframe();
+            if (mFrameSkipPolicy != null) {
+                KeypointTracker.prepare(frame, mLumaView, slot);
+            }
+            if (slot.mKeyframe) {
+                mPoseEstimator.preprocess(frame, slot);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            mCounters.countFailed();
+            mFreeSlots.offer(slot);
+            if (mMotionGate != null) {
+                mMotionGate.reset();
+            }
+            return false;
+        }
+        slot.mReceivedNanos = received;
+        mMetrics.record(PipelineMetrics.STAGE_PREPROCESS, received, System.nanoTime());
+        FrameSlot stale = mInferChannel.offer(slot);
+        if (stale != null) {
+            mCounters.countDroppedBeforeInference();
+            if (stale.mKeyframe && mFrameSkipPolicy != null) {
+                mFrameSkipPolicy.requestKeyframe();
+            }
+            mFreeSlots.offer(stale);
+        }
+        return true;
+    }
+
+    private void runInferStage(PoseEstimatorFactory poseEstimatorFactory) {
+        PoseEstimator poseEstimator;
+        try {
+            poseEstimator = poseEstimatorFactory.create();
+        } catch (RuntimeException e) {
+            mPoseEstimatorFailure = e;
+            mPoseEstimatorCreated.countDown();
+            return;
+        }
+        mPoseEstimator = poseEstimator;
+        mPoseEstimatorCreated.countDown();
+        try {
+            mStarted.await();
+            while (true) {
+                FrameSlot slot = mInferChannel.take();
+                long start = System.nanoTime();
+                try {
+                    if (mFrameSkipPolicy == null) {
+                        mPoseEstimator.infer(slot);
+                    } else {
+                        inferOrTrack(slot);
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    mCounters.countFailed();
+                    mFreeSlots.offer(slot);
+                    continue;
+                }
+                if (mPresenceDetector != null) {
+                    mPresenceDetector.update(slot.mPose);
+                }
+                mMetrics.record(PipelineMetrics.STAGE_INFERENCE, start, System.nanoTime());
+                FrameSlot stale = mRenderChannel.offer(slot);
+                if (stale != null) {
+                    mCounters.countDroppedBeforeRender();
+                    mFreeSlots.offer(stale);
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Inference stage stopped");
+        } finally {
+            poseEstimator.close();
+        }
+    }
+
+    private void inferOrTrack(FrameSlot slot) {
+        float tracked = 1.0f;
+        if (slot.mKeyframe) {
+            mPoseEstimator.estimate(slot);
+        } else {
+            tracked = mKeypointTracker.track(slot);
+        }
+        // the next frame is tracked from these keypoints before they are smoothed
+        mKeypointTracker.setReference(slot);
+        mFrameSkipPolicy.update(slot.mPose, slot.mKeyframe, tracked);
+        mPoseEstimator.updatePose(slot);
+    }
+
+    private void runRenderStage() {
+        try {
+            while (true) {
+                FrameSlot slot = mRenderChannel.take();
+                long start = System.nanoTime();
+                try {
+                    mRenderer.render(slot);
+                    long end = System.nanoTime();
+                    mMetrics.record(PipelineMetrics.STAGE_RENDER, start, end);
+                    mMetrics.record(PipelineMetrics.STAGE_END_TO_END, slot.mReceivedNanos, end);
+                    mMetrics.getFrameRate().tick(end);
+                    mCounters.countProcessed();
+                    if (!slot.mKeyframe) {
+                        mCounters.countTracked();
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    mCounters.countFailed();
+                }
+                mFreeSlots.offer(slot);
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Render stage stopped");
+        }
+    }
+}
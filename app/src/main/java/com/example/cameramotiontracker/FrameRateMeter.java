@@ -0,0 +1,45 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Frame rate over the last frames, from a ring of their timestamps.
+ */
+public class FrameRateMeter {
+    private final long[] mTimestamps;
+    private int mNext;
+    private int mCount;
+
+    /**
+     * @param window number of frames the rate is averaged over, at least 2
+     */
+    public FrameRateMeter(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("Invalid window " + window);
+        }
+        mTimestamps = new long[window];
+    }
+
+    /**
+     * Records a frame.
+     *
+     * @param nanos time of the frame in nanoseconds, e.g. System.nanoTime()
+     */
+    public synchronized void tick(long nanos) {
+        mTimestamps[mNext] = nanos;
+        mNext = (mNext + 1) % mTimestamps.length;
+        if (mCount < mTimestamps.length) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Returns the frame rate over the window, 0 until two frames are recorded.
+     */
+    public synchronized double getFramesPerSecond() {
+        if (mCount < 2) {
+            return 0;
+        }
+        long newest = mTimestamps[(mNext - 1 + mTimestamps.length) % mTimestamps.length];
+        long oldest = mTimestamps[(mNext - mCount + mTimestamps.length) % mTimestamps.length];
+        return newest > oldest ? (mCount - 1) * 1e9 / (newest - oldest) : 0;
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.cameramotiontracker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records camera frames and keypoints into a FrameRecording file.
+ * The calling threads only pack a frame into one of a few buffers allocated up front and hand it over
+ * through an SpscQueue; a writer thread of its own appends the buffers to the file and returns them.
+ * Frames arriving while every buffer is still waiting to be written are dropped and counted, so a slow
+ * storage never holds up the camera. Frames can be downscaled or reduced to luma while packed.
+ */
+public class FrameRecorder implements Closeable {
+    public static final int DEFAULT_FRAME_BUFFERS = 8;
+    public static final int DEFAULT_KEYPOINTS_BUFFERS = 16;
+    // how long the writer sleeps when there is nothing to write
+    private static final long IDLE_PARK_NANOS = 2000000L;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mDownscale;
+    private final boolean mLumaOnly;
+    private final int mKeypointCount;
+    // size of the packed frame, luma and chroma planes
+    private final int mPackedWidth;
+    private final int mPackedHeight;
+    private final int mChromaWidth;
+    private final int mChromaHeight;
+
+    // buffers go round from free to filled, filled by the recording thread and written by the writer
+    private final SpscQueue<ByteBuffer> mFreeFrames;
+    private final SpscQueue<ByteBuffer> mFilledFrames;
+    private final SpscQueue<ByteBuffer> mFreeKeypoints;
+    private final SpscQueue<ByteBuffer> mFilledKeypoints;
+    private final AtomicLong mRecordedFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mDroppedKeypoints = new AtomicLong();
+
+    private final Thread mWriter;
+    private volatile boolean mClosing;
+    private volatile IOException mWriteError;
+    // only touched by the writer until it is done
+    private final RecordingIndex mIndex = new RecordingIndex();
+    private long mFilePosition;
+
+    public FrameRecorder(File file, int width, int height, int keypointCount) throws IOException {
+        this(file, width, height, 1, false, keypointCount, DEFAULT_FRAME_BUFFERS);
+    }
+
+    /**
+     * Creates the file, overwriting it if it exists, and starts the writer.
+     *
+     * @param width width of every recorded frame
+     * @param height height of every recorded frame
+     * @param downscale frames are recorded at 1 / downscale of their size, every downscale-th pixel and row
+     * @param lumaOnly whether only the Y plane is recorded
+     * @param keypointCount number of keypoints of every recordKeypoints call
+     * @param frameBuffers number of frames which can wait to be written
+     */
+    public FrameRecorder(File file, int width, int height, int downscale, boolean lumaOnly,
+                         int keypointCount, int frameBuffers) throws IOException {
+        if (downscale < 1 || width / downscale < 1 || height / downscale < 1) {
+            throw new IllegalArgumentException("Invalid downscale " + downscale);
+        }
+        mWidth = width;
+        mHeight = height;
+        mDownscale = downscale;
+        mLumaOnly = lumaOnly;
+        mKeypointCount = keypointCount;
+        mPackedWidth = width / downscale;
+        mPackedHeight = height / downscale;
+        mChromaWidth = (mPackedWidth + 1) / 2;
+        mChromaHeight = (mPackedHeight + 1) / 2;
+
+        mFreeFrames = new SpscQueue<>(frameBuffers);
+        mFilledFrames = new SpscQueue<>(frameBuffers);
+        for (int i = 0; i < frameBuffers; i++) {
+            mFreeFrames.offer(ByteBuffer.allocateDirect(frameRecordSize()).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        mFreeKeypoints = new SpscQueue<>(DEFAULT_KEYPOINTS_BUFFERS);
+        mFilledKeypoints = new SpscQueue<>(DEFAULT_KEYPOINTS_BUFFERS);
+        for (int i = 0; i < DEFAULT_KEYPOINTS_BUFFERS; i++) {
+            mFreeKeypoints.offer(ByteBuffer.allocateDirect(FrameRecording.keypointsRecordSize(keypointCount))
+                    .order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0);
+        mChannel = mFile.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(FrameRecording.HEADER_SIZE);
+        FrameRecording.writeHeader(header);
+        header.flip();
+        try {
+            writeFully(header);
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+        mWriter = new Thread(this::runWriter, "FrameRecorder");
+        mWriter.start();
+    }
+
+    private int planeDataSize() {
+        int luma = mPackedWidth * mPackedHeight;
+        return mLumaOnly ? luma + 1 : luma + 2 * mChromaWidth * mChromaHeight;
+    }
+
+    private int frameRecordSize() {
+        return FrameRecording.RECORD_HEADER_SIZE + FrameRecording.FRAME_HEADER_SIZE + planeDataSize();
+    }
+
+    public long getRecordedFrames() {
+        return mRecordedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return mDroppedFrames.get();
+    }
+
+    public long getDroppedKeypoints() {
+        return mDroppedKeypoints.get();
+    }
+
+    /**
+     * Packs the frame for the writer. Always called from the same thread, e.g. the camera thread,
+     * and the frame can be released as soon as this returns.
+     *
+     * @return false if the frame was dropped, because every buffer is waiting to be written
+     */
+    public boolean recordFrame(YuvFrame frame) {
+        if (frame.getWidth() != mWidth || frame.getHeight() != mHeight) {
+            throw new IllegalArgumentException("Frame size " + frame.getWidth() + "x" + frame.getHeight()
+                    + " differs from " + mWidth + "x" + mHeight);
+        }
+        ByteBuffer buffer = mFreeFrames.poll();
+        if (buffer == null) {
+            mDroppedFrames.incrementAndGet();
+            return false;
+        }
+        buffer.clear();
+        packFrame(frame, buffer);
+        buffer.flip();
+        mFilledFrames.offer(buffer);
+        mRecordedFrames.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Queues the keypoints of the pose for the writer, at the timestamp of the pose.
+     * Always called from the same thread, e.g. the render thread.
+     *
+     * @return false if the keypoints were dropped, because every buffer is waiting to be written
+     */
+    public boolean recordKeypoints(Pose pose) {
+        if (pose.getKeypointCount() != mKeypointCount) {
+            throw new IllegalArgumentException("Expected " + mKeypointCount + " keypoints, got " + pose.getKeypointCount());
+        }
+        ByteBuffer buffer = mFreeKeypoints.poll();
+        if (buffer == null) {
+            mDroppedKeypoints.incrementAndGet();
+            return false;
+        }
+        buffer.clear();
+        FrameRecording.writeKeypoints(pose, buffer);
+        buffer.flip();
+        mFilledKeypoints.offer(buffer);
+        return true;
+    }
+
+    private void packFrame(YuvFrame frame, ByteBuffer output) {
+        int lumaSize = mPackedWidth * mPackedHeight;
+        int chromaSize = mChromaWidth * mChromaHeight;
+        output.putInt(FrameRecording.RECORD_FRAME);
+        output.putInt(frameRecordSize() - FrameRecording.RECORD_HEADER_SIZE);
+        output.putLong(frame.getTimestamp());
+        output.putInt(mPackedWidth);
+        output.putInt(mPackedHeight);
+        output.putInt(frame.getRotation());
+        output.putInt(frame.isMirror() ? FrameRecording.FLAG_MIRROR : 0);
+        // Y, then U and V either packed one after the other or both at the neutral chroma byte
+        output.putInt(1).putInt(mPackedWidth).putInt(0).putInt(lumaSize);
+        if (mLumaOnly) {
+            output.putInt(0).putInt(0).putInt(lumaSize).putInt(1);
+            output.putInt(0).putInt(0).putInt(lumaSize).putInt(1);
+        } else {
+            output.putInt(1).putInt(mChromaWidth).putInt(lumaSize).putInt(chromaSize);
+            output.putInt(1).putInt(mChromaWidth).putInt(lumaSize + chromaSize).putInt(chromaSize);
+        }
+
+        frame.packPlane(0, mDownscale, output, mPackedWidth, mPackedHeight);
+        if (mLumaOnly) {
+            output.put(FrameRecording.NEUTRAL_CHROMA);
+            return;
+        }
+        for (int i = 1; i < YuvFrame.PLANE_COUNT; i++) {
+            frame.packPlane(i, mDownscale, output, mChromaWidth, mChromaHeight);
+        }
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                boolean idle = true;
+                ByteBuffer buffer;
+                while ((buffer = mFilledKeypoints.poll()) != null) {
+                    writeRecord(buffer, FrameRecording.RECORD_KEYPOINTS);
+                    mFreeKeypoints.offer(buffer);
+                    idle = false;
+                }
+                while ((buffer = mFilledFrames.poll()) != null) {
+                    writeRecord(buffer, FrameRecording.RECORD_FRAME);
+                    mFreeFrames.offer(buffer);
+                    idle = false;
+                }
+                if (idle) {
+                    // everything recorded before close has been written
+                    if (mClosing) {
+                        return;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            // filled buffers are no longer returned, so everything recorded from now on is dropped
+            e.printStackTrace();
+            mWriteError = e;
+        }
+    }
+
+    private void writeRecord(ByteBuffer buffer, int type) throws IOException {
+        // both frame and keypoints payloads start with the timestamp
+        mIndex.add(mFilePosition, buffer.getLong(FrameRecording.RECORD_HEADER_SIZE), type);
+        writeFully(buffer);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mFilePosition += mChannel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes everything recorded so far, then the index and the trailer, and closes the file.
+     * Call after the recording threads stopped recording.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!mChannel.isOpen()) {
+            return;
+        }
+        mClosing = true;
+        LockSupport.unpark(mWriter);
+        try {
+            mWriter.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (mWriteError == null && !mWriter.isAlive()) {
+                long indexOffset = mFilePosition;
+                ByteBuffer index = ByteBuffer.allocate(mIndex.recordSize() + FrameRecording.TRAILER_SIZE);
+                mIndex.writeRecord(index);
+                index.putInt(FrameRecording.RECORD_TRAILER);
+                index.putInt(FrameRecording.TRAILER_SIZE - FrameRecording.RECORD_HEADER_SIZE);
+                index.putLong(indexOffset);
+                index.flip();
+                writeFully(index);
+            }
+        } finally {
+            mFile.close();
+        }
+        if (mWriteError != null) {
+            throw mWriteError;
+        }
+    }
+}
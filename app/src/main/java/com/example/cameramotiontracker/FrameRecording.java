@@ -0,0 +1,111 @@
+package com.example.cameramotiontracker;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of frame recordings, "CMTR" files of YUV_420_888 camera frames. All values are little endian.
+ * <pre>
+ * file header   int magic "CMTR", int version
+ * records       int type, int payload length, payload
+ *
+ * frame payload     long timestamp, int width, int height, int rotation, int flags,
+ *                   3 planes of int pixel stride, int row stride, int offset, int length,
+ *                   plane data
+ * keypoints payload long timestamp, int keypoint count, float y, x and score of every keypoint
+ * index payload     int entry count, entries of long record offset, long timestamp, int record type
+ * trailer payload   long offset of the index record
+ * </pre>
+ * Plane offsets are relative to the start of the plane data, so planes may share bytes,
+ * e.g. the interleaved chroma of NV21 frames. Luma only frames share a single neutral chroma byte
+ * with strides of 0, so they still convert, as gray. Readers skip records of types they do not know.
+ * The index of all frame and keypoints records and the trailer, always the last record, are only written
+ * when a recording is closed; recordings cut short can still be read from start to end.
+ */
+final class FrameRecording {
+    // "CMTR" read as little endian int
+    static final int MAGIC = 0x52544D43;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int RECORD_FRAME = 1;
+    static final int RECORD_KEYPOINTS = 2;
+    static final int RECORD_INDEX = 3;
+    static final int RECORD_TRAILER = 4;
+
+    static final int FLAG_MIRROR = 1;
+    static final int PLANE_HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 24 + YuvFrame.PLANE_COUNT * PLANE_HEADER_SIZE;
+    static final byte NEUTRAL_CHROMA = (byte) 128;
+
+    static final int KEYPOINTS_HEADER_SIZE = 12;
+    static final int INDEX_ENTRY_SIZE = 20;
+    static final int TRAILER_SIZE = RECORD_HEADER_SIZE + 8;
+
+    private FrameRecording() {}
+
+    static void writeHeader(ByteBuffer output) {
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt(MAGIC);
+        output.putInt(VERSION);
+    }
+
+    /**
+     * Returns the number of bytes writeFrame takes for the frame, record header included.
+     */
+    static int frameRecordSize(YuvFrame frame) {
+        int size = RECORD_HEADER_SIZE + FRAME_HEADER_SIZE;
+        for (int i = 0; i < YuvFrame.PLANE_COUNT; i++) {
+            size += frame.getPlane(i).remaining();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the frame as one record, every plane copied as it is from its position to its limit.
+     */
+    static void writeFrame(YuvFrame frame, ByteBuffer output) {
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt(RECORD_FRAME);
+        output.putInt(frameRecordSize(frame) - RECORD_HEADER_SIZE);
+        output.putLong(frame.getTimestamp());
+        output.putInt(frame.getWidth());
+        output.putInt(frame.getHeight());
+        output.putInt(frame.getRotation());
+        output.putInt(frame.isMirror() ? FLAG_MIRROR : 0);
+        int offset = 0;
+        for (int i = 0; i < YuvFrame.PLANE_COUNT; i++) {
+            int length = frame.getPlane(i).remaining();
+            output.putInt(frame.getPixelStride(i));
+            output.putInt(frame.getRowStride(i));
+            output.putInt(offset);
+            output.putInt(length);
+            offset += length;
+        }
+        for (int i = 0; i < YuvFrame.PLANE_COUNT; i++) {
+            output.put(frame.getPlane(i).duplicate());
+        }
+    }
+
+    /**
+     * Returns the number of bytes writeKeypoints takes, record header included.
+     */
+    static int keypointsRecordSize(int keypointCount) {
+        return RECORD_HEADER_SIZE + KEYPOINTS_HEADER_SIZE + keypointCount * 3 * 4;
+    }
+
+    /**
+     * Writes the keypoints of the pose, with its timestamp, as one record.
+     */
+    static void writeKeypoints(Pose pose, ByteBuffer output) {
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt(RECORD_KEYPOINTS);
+        output.putInt(keypointsRecordSize(pose.getKeypointCount()) - RECORD_HEADER_SIZE);
+        output.putLong(pose.getTimestamp());
+        output.putInt(pose.getKeypointCount());
+        for (float value : pose.getValues()) {
+            output.putFloat(value);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.cameramotiontracker;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays the frames of a FrameSource into a sink, either as fast as the sink takes them
+ * or at the pace they were recorded at, so that the pipeline can run on recordings without a camera.
+ * Free of Android classes, so that recordings can also be replayed on a host JVM.
+ */
+public class FrameReplayer {
+    /**
+     * Receives every frame of the source, on the replaying thread, e.g. FramePipeline::submit.
+     */
+    public interface Sink {
+        void onFrame(YuvFrame frame) throws Exception;
+    }
+
+    private final FrameSource mSource;
+    private final Sink mSink;
+    private final boolean mRecordedTiming;
+    private final YuvFrame mFrame = new YuvFrame();
+    private Thread mThread;
+
+    /**
+     * @param recordedTiming whether frames are played at the pace of their timestamps, otherwise as fast as possible
+     */
+    public FrameReplayer(FrameSource source, Sink sink, boolean recordedTiming) {
+        mSource = source;
+        mSink = sink;
+        mRecordedTiming = recordedTiming;
+    }
+
+    /**
+     * Plays the source on the calling thread until it ends or the thread is interrupted.
+     *
+     * @return number of frames played
+     */
+    public long run() throws IOException {
+        long frames = 0;
+        long firstTimestamp = 0;
+        long startNanos = 0;
+        while (!Thread.currentThread().isInterrupted() && mSource.read(mFrame)) {
+            if (mRecordedTiming) {
+                if (frames == 0) {
+                    firstTimestamp = mFrame.getTimestamp();
+                    startNanos = System.nanoTime();
+                }
+                long due = startNanos + mFrame.getTimestamp() - firstTimestamp;
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            try {
+                mSink.onFrame(mFrame);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * Plays the source on a thread of its own.
+     */
+    public void start() {
+        mThread = new Thread(() -> {
+            try {
+                run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "FrameReplayer");
+        mThread.start();
+    }
+
+    /**
+     * Stops the replaying thread and waits until it is done. The source is left open.
+     */
+    public void stop() {
+        if (mThread == null) {
+            return;
+        }
+        mThread.interrupt();
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.cameramotiontracker;
+
+import android.media.Image;
+import android.media.ImageReader;
+
+/**
+ * Feeds camera frames from an ImageReader into a FramePipeline, newest frame first.
+ * Unlike acquireLatestImage, frames which queued up in the reader are counted as dropped,
+ * and every Image is closed before the listener returns, so camera buffers are back in the reader right away.
+ */
+public class FrameScheduler implements ImageReader.OnImageAvailableListener {
+
+    private final FramePipeline mPipeline;
+    private final FrameCounters mCounters;
+    private volatile int mRotation;
+    private volatile boolean mMirror;
+    // camera image wrapped for the pipeline, only touched on the camera thread
+    private final YuvFrame mFrame = new YuvFrame();
+    private volatile FrameRecorder mRecorder;
+
+    public FrameScheduler(FramePipeline pipeline) {
+        mPipeline = pipeline;
+        mCounters = pipeline.getCounters();
+    }
+
+    /**
+     * Sets how camera frames are oriented before preprocessing, see YuvFrame.setOrientation.
+     */
+    public void setOrientation(int rotation, boolean mirror) {
+        mRotation = rotation;
+        mMirror = mirror;
+    }
+
+    /**
+     * Records every camera frame, including the ones not processed, until set to null.
+     */
+    public void setRecorder(FrameRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    @Override
+    public void onImageAvailable(ImageReader reader) {
+        Image latest = null;
+        try {
+            // drain the reader, only the newest frame is worth processing
+            Image image;
+            while ((image = reader.acquireNextImage()) != null) {
+                record(image);
+                if (latest != null) {
+                    // received, but never submitted to the pipeline
+                    latest.close();
+                    mCounters.countReceived();
+                    mCounters.countDroppedStale();
+                }
+                latest = image;
+            }
+        } catch (IllegalStateException e) {
+            // maxImages are acquired elsewhere, go on with what we have
+            e.printStackTrace();
+        }
+        if (latest != null) {
+            YuvConverter.wrap(latest, mFrame).setOrientation(mRotation, mMirror);
+            mPipeline.submit(mFrame);
+            latest.close();
+        }
+    }
+
+    private void record(Image image) {
+        FrameRecorder recorder = mRecorder;
+        if (recorder != null) {
+            YuvConverter.wrap(image, mFrame).setOrientation(mRotation, mMirror);
+            recorder.recordFrame(mFrame);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Decides which frames run the model, keyframes, and which only track the keypoints of the frame before.
+ * The keyframe interval adapts to how fast the body moves: the model runs every maxInterval-th frame
+ * while the body is at rest and on every frame once it moves faster than highMotion.
+ * A lost body or lost tracking makes the next frame a keyframe.
+ * Motion is measured in body sizes per second, the body size being the extent of its confident keypoints.
+ */
+public class FrameSkipPolicy {
+    public static final int DEFAULT_MAX_INTERVAL = 4;
+    public static final float DEFAULT_LOW_MOTION = 0.2f;
+    public static final float DEFAULT_HIGH_MOTION = 2.0f;
+    // share of the confident keypoints of a keyframe which must still be tracked
+    public static final float DEFAULT_MIN_TRACKED = 0.6f;
+    // weight of the latest measurement in the tracked motion
+    private static final float SMOOTHING = 0.5f;
+
+    private final int mMaxInterval;
+    private final float mLowMotion;
+    private final float mHighMotion;
+    private final float mMinTracked;
+
+    // set by the inference thread, read by the camera thread
+    private volatile int mInterval = 1;
+    private volatile boolean mKeyframeRequested = true;
+    // only touched by the camera thread
+    private int mSinceKeyframe;
+    // only touched by the inference thread
+    private final Pose mLastPose;
+    private boolean mHasLastPose;
+    private float mMotion;
+
+    public FrameSkipPolicy(int keypointCount) {
+        this(keypointCount, DEFAULT_MAX_INTERVAL, DEFAULT_LOW_MOTION, DEFAULT_HIGH_MOTION, DEFAULT_MIN_TRACKED);
+    }
+
+    /**
+     * @param maxInterval frames from one keyframe to the next while the body is at rest
+     * @param lowMotion body sizes per second up to which the body is considered at rest
+     * @param highMotion body sizes per second from which every frame is a keyframe
+     * @param minTracked share of the confident keypoints which must be tracked, or the next frame is a keyframe
+     */
+    public FrameSkipPolicy(int keypointCount, int maxInterval, float lowMotion, float highMotion, float minTracked) {
+        mMaxInterval = maxInterval;
+        mLowMotion = lowMotion;
+        mHighMotion = highMotion;
+        mMinTracked = minTracked;
+        mLastPose = new Pose(keypointCount);
+    }
+
+    /**
+     * Returns the current number of frames from one keyframe to the next.
+     */
+    public int getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * Returns whether the next frame runs the model. Called for every frame, always from the same thread.
+     */
+    public boolean nextIsKeyframe() {
+        if (mKeyframeRequested || ++mSinceKeyframe >= mInterval) {
+            // a request made right now is served by this keyframe as well
+            mKeyframeRequested = false;
+            mSinceKeyframe = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes the next frame a keyframe, e.g. because a keyframe was dropped.
+     */
+    public void requestKeyframe() {
+        mKeyframeRequested = true;
+    }
+
+    /**
+     * Updates the interval from the pose of a processed frame. Called in frame order, always from the same thread.
+     *
+     * @param keyframe whether the pose was inferred by the model rather than tracked
+     * @param tracked share of the confident keypoints the tracker followed, 1 for keyframes
+     */
+    public void update(Pose pose, boolean keyframe, float tracked) {
+        if (!CropRegion.torsoVisible(pose)) {
+            // nothing to track, look for the body on every frame
+            mHasLastPose = false;
+            mInterval = 1;
+            return;
+        }
+        if (!keyframe && tracked < mMinTracked) {
+            requestKeyframe();
+        }
+        if (mHasLastPose) {
+            long elapsed = pose.getTimestamp() - mLastPose.getTimestamp();
+            float motion = measureMotion(mLastPose, pose);
+            if (elapsed > 0 && motion >= 0) {
+                mMotion += SMOOTHING * (motion / (elapsed / 1e9f) - mMotion);
+                mInterval = intervalFor(mMotion);
+            }
+        } else {
+            mMotion = mHighMotion;
+            mInterval = 1;
+        }
+        mLastPose.copyFrom(pose);
+        mHasLastPose = true;
+    }
+
+    int intervalFor(float motion) {
+        if (motion >= mHighMotion) {
+            return 1;
+        }
+        if (motion <= mLowMotion) {
+            return mMaxInterval;
+        }
+        float share = (motion - mLowMotion) / (mHighMotion - mLowMotion);
+        return Math.max(1, Math.round(mMaxInterval - share * (mMaxInterval - 1)));
+    }
+
+    /**
+     * Returns the mean distance the keypoints confident in both poses moved, in body sizes, or -1 if there are none.
+     */
+    private static float measureMotion(Pose from, Pose to) {
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float minX = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float distance = 0.0f;
+        int count = 0;
+        for (int i = 0; i < to.getKeypointCount(); i++) {
+            if (from.getScore(i) < CropRegion.MIN_KEYPOINT_SCORE || to.getScore(i) < CropRegion.MIN_KEYPOINT_SCORE) {
+                continue;
+            }
+            float y = to.getY(i);
+            float x = to.getX(i);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            distance += (float) Math.hypot(y - from.getY(i), x - from.getX(i));
+            count++;
+        }
+        float size = Math.max(maxY - minY, maxX - minX);
+        if (count == 0 || size < 1.0f) {
+            return -1.0f;
+        }
+        return distance / count / size;
+    }
+}
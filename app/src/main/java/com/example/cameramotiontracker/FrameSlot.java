@@ -0,0 +1,68 @@
+package com.example.cameramotiontracker;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One frame travelling through the FramePipeline: the model input sampled from the camera image,
+ * the crop region it was sampled with and the keypoints inferred from it.
+ * Slots are allocated once and recycled, so frames pass the pipeline without allocations.
+ */
+public class FrameSlot {
+    final ByteBuffer mInput;
+    final double[] mCropRegion;
+    final Pose mPose;
+    int mImageHeight;
+    int mImageWidth;
+    long mTimestamp;
+    // System.nanoTime() when the camera frame reached the pipeline
+    long mReceivedNanos;
+    // whether the frame runs the model rather than tracking the keypoints of the frame before
+    boolean mKeyframe = true;
+    // downscaled Y plane of the camera frame and its orientation, see KeypointTracker.prepare
+    ByteBuffer mLuma;
+    int mLumaWidth;
+    int mLumaHeight;
+    // mLuma wrapped as Mat of mLumaSize, rebuilt only when the downscaled size changes
+    Mat mLumaMat;
+    final Size mLumaSize = new Size();
+    int mRotation;
+    boolean mMirror;
+
+    FrameSlot(ByteBuffer input, int cropRegionSize, int keypointCount) {
+        mInput = input;
+        mCropRegion = new double[cropRegionSize];
+        mPose = new Pose(keypointCount);
+    }
+
+    /**
+     * Returns the keypoints inferred from the frame, in pixel coordinates of the oriented image.
+     */
+    public Pose getPose() {
+        return mPose;
+    }
+
+    public int getImageHeight() {
+        return mImageHeight;
+    }
+
+    public int getImageWidth() {
+        return mImageWidth;
+    }
+
+    /**
+     * Returns whether the keypoints were inferred by the model rather than tracked from the frame before.
+     */
+    public boolean isKeyframe() {
+        return mKeyframe;
+    }
+
+    /**
+     * Returns the timestamp of the camera image in nanoseconds.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+}
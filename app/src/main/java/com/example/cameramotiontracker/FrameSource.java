@@ -0,0 +1,16 @@
+package com.example.cameramotiontracker;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of YUV_420_888 frames which are pulled one after another, e.g. a recording.
+ */
+public interface FrameSource extends Closeable {
+    /**
+     * Reads the next frame into the given frame. Its plane buffers stay valid until the next read or close.
+     *
+     * @return false at the end of the source
+     */
+    boolean read(YuvFrame frame) throws IOException;
+}
@@ -0,0 +1,165 @@
+package com.example.cameramotiontracker;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.gpu.CompatibilityList;
+import org.tensorflow.lite.gpu.GpuDelegate;
+import org.tensorflow.lite.nnapi.NnApiDelegate;
+
+/**
+ * Hardware and kernels a TensorFlow Lite interpreter runs on.
+ * A backend turns into interpreter options, with a delegate where the backend needs one,
+ * and owns that delegate until it is closed. One backend serves one interpreter at a time.
+ *
+ * @see InferenceBackendPolicy
+ */
+public interface InferenceBackend {
+
+    String getName();
+
+    /**
+     * Returns whether this backend can run on this device. Must not throw.
+     */
+    boolean isSupported();
+
+    /**
+     * Creates options of an interpreter running on this backend.
+     *
+     * @param threadCount number of CPU threads, also used by delegates for the operations they don't support
+     */
+    Interpreter.Options createOptions(int threadCount);
+
+    /**
+     * Releases the delegate created by createOptions. Call after the interpreter using it is closed.
+     */
+    void close();
+
+    /**
+     * Returns the backend with the given name, one of "cpu", "xnnpack", "nnapi" or "gpu".
+     */
+    static InferenceBackend fromName(String name) {
+        switch (name) {
+            case Cpu.NAME:
+                return new Cpu(false);
+            case Cpu.NAME_XNNPACK:
+                return new Cpu(true);
+            case Nnapi.NAME:
+                return new Nnapi();
+            case Gpu.NAME:
+                return new Gpu();
+            default:
+                throw new IllegalArgumentException("Unknown inference backend " + name);
+        }
+    }
+
+    /**
+     * Built-in CPU kernels, optionally replaced by XNNPACK for the operations it supports.
+     */
+    final class Cpu implements InferenceBackend {
+        public static final String NAME = "cpu";
+        public static final String NAME_XNNPACK = "xnnpack";
+
+        private final boolean mUseXnnpack;
+
+        public Cpu(boolean useXnnpack) {
+            mUseXnnpack = useXnnpack;
+        }
+
+        @Override
+        public String getName() {
+            return mUseXnnpack ? NAME_XNNPACK : NAME;
+        }
+
+        @Override
+        public boolean isSupported() {
+            return true;
+        }
+
+        @Override
+        public Interpreter.Options createOptions(int threadCount) {
+            return new Interpreter.Options().setNumThreads(threadCount).setUseXNNPACK(mUseXnnpack);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Android Neural Networks API, which runs the model on whatever accelerator the vendor driver provides.
+     */
+    final class Nnapi implements InferenceBackend {
+        public static final String NAME = "nnapi";
+
+        private NnApiDelegate mDelegate;
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public boolean isSupported() {
+            // available since API 27, below minSdkVersion
+            return true;
+        }
+
+        @Override
+        public Interpreter.Options createOptions(int threadCount) {
+            close();
+            mDelegate = new NnApiDelegate();
+            return new Interpreter.Options().setNumThreads(threadCount).addDelegate(mDelegate);
+        }
+
+        @Override
+        public void close() {
+            if (mDelegate != null) {
+                mDelegate.close();
+                mDelegate = null;
+            }
+        }
+    }
+
+    /**
+     * GPU delegate with the options recommended for this device.
+     */
+    final class Gpu implements InferenceBackend {
+        public static final String NAME = "gpu";
+
+        private GpuDelegate mDelegate;
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public boolean isSupported() {
+            try {
+                CompatibilityList compatList = new CompatibilityList();
+                boolean supported = compatList.isDelegateSupportedOnThisDevice();
+                compatList.close();
+                return supported;
+            } catch (RuntimeException | LinkageError e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        @Override
+        public Interpreter.Options createOptions(int threadCount) {
+            close();
+            CompatibilityList compatList = new CompatibilityList();
+            mDelegate = new GpuDelegate(compatList.getBestOptionsForThisDevice());
+            compatList.close();
+            return new Interpreter.Options().setNumThreads(threadCount).addDelegate(mDelegate);
+        }
+
+        @Override
+        public void close() {
+            if (mDelegate != null) {
+                mDelegate.close();
+                mDelegate = null;
+            }
+        }
+    }
+}
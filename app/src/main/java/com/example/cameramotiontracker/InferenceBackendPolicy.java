@@ -0,0 +1,118 @@
+package com.example.cameramotiontracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ordered preference of inference backends. The first backend which is supported on the device
+ * and manages to load the model is used, so a missing GPU or a delegate rejecting the model
+ * falls back to the next backend instead of failing.
+ */
+public class InferenceBackendPolicy {
+
+    /**
+     * Creates whatever runs on the backend, e.g. the interpreter.
+     */
+    public interface Loader<T> {
+        T load(InferenceBackend backend) throws Exception;
+    }
+
+    // GPU first, XNNPACK roughly halves the latency of the plain CPU kernels
+    public static final String[] DEFAULT_BACKENDS = {
+            InferenceBackend.Gpu.NAME, InferenceBackend.Cpu.NAME_XNNPACK, InferenceBackend.Cpu.NAME};
+
+    private final List<InferenceBackend> mCandidates;
+    private final int mThreadCount;
+
+    public InferenceBackendPolicy(int threadCount) {
+        this(threadCount, DEFAULT_BACKENDS);
+    }
+
+    /**
+     * @param threadCount number of CPU threads of the interpreter
+     * @param backendNames names of the backends in order of preference, see InferenceBackend.fromName
+     */
+    public InferenceBackendPolicy(int threadCount, String... backendNames) {
+        this(threadCount, toBackends(backendNames));
+    }
+
+    public InferenceBackendPolicy(int threadCount, List<InferenceBackend> candidates) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Invalid thread count " + threadCount);
+        }
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("No inference backend given");
+        }
+        mThreadCount = threadCount;
+        mCandidates = new ArrayList<>(candidates);
+    }
+
+    private static List<InferenceBackend> toBackends(String[] names) {
+        List<InferenceBackend> backends = new ArrayList<>();
+        for (String name : names) {
+            backends.add(InferenceBackend.fromName(name));
+        }
+        return backends;
+    }
+
+    public int getThreadCount() {
+        return mThreadCount;
+    }
+
+    public List<InferenceBackend> getCandidates() {
+        return mCandidates;
+    }
+
+    /**
+     * Tries the backends in order of preference. A backend whose loader fails is closed before the next one is tried.
+     *
+     * @param loader creates the interpreter on the given backend
+     * @return selected backend and what the loader created on it
+     * @throws IllegalStateException if no backend could load
+     */
+    public <T> Selection<T> select(Loader<T> loader) {
+        for (InferenceBackend backend : mCandidates) {
+            if (!backend.isSupported()) {
+                continue;
+            }
+            try {
+                return new Selection<>(backend, loader.load(backend));
+            } catch (Exception | LinkageError e) {
+                // e.g. delegate failing to prepare some operation of the model
+                e.printStackTrace();
+                backend.close();
+            }
+        }
+        throw new IllegalStateException("No inference backend of " + Arrays.toString(getNames()) + " could load the model");
+    }
+
+    private String[] getNames() {
+        String[] names = new String[mCandidates.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = mCandidates.get(i).getName();
+        }
+        return names;
+    }
+
+    /**
+     * Backend chosen by select together with the loaded result.
+     */
+    public static class Selection<T> {
+        private final InferenceBackend mBackend;
+        private final T mResult;
+
+        Selection(InferenceBackend backend, T result) {
+            mBackend = backend;
+            mResult = result;
+        }
+
+        public InferenceBackend getBackend() {
+            return mBackend;
+        }
+
+        public T getResult() {
+            return mResult;
+        }
+    }
+}
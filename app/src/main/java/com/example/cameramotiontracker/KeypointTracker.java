@@ -0,0 +1,157 @@
+package com.example.cameramotiontracker;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Follows keypoints from one frame to the next with pyramidal Lucas-Kanade optical flow, for frames which do not
+ * run the model. Flow is computed on the Y plane of the camera frames downscaled by LUMA_DOWNSCALE,
+ * in camera orientation; keypoints are mapped there and back with FrameOrientation.
+ * The reference is the previous frame with its keypoints as inferred or tracked, before any smoothing,
+ * so tracking errors do not build up through the smoothing lag.
+ */
+public class KeypointTracker {
+    public static final int LUMA_DOWNSCALE = 2;
+    private static final Size WINDOW_SIZE = new Size(15, 15);
+    private static final int PYRAMID_LEVELS = 3;
+
+    private final TermCriteria mCriteria = new TermCriteria(TermCriteria.COUNT + TermCriteria.EPS, 20, 0.03);
+    private final Pose mReferencePose;
+    private final Mat mReferenceLuma = new Mat();
+    private int mReferenceRotation;
+    private boolean mReferenceMirror;
+    private boolean mHasReference;
+
+    // buffers reused by every track
+    private final float[] mPoints;
+    private final byte[] mStatus;
+    private final MatOfPoint2f mFromPoints = new MatOfPoint2f();
+    private final MatOfPoint2f mToPoints = new MatOfPoint2f();
+    private final MatOfByte mStatusMat = new MatOfByte();
+    private final MatOfFloat mErrorMat = new MatOfFloat();
+
+    public KeypointTracker(int keypointCount) {
+        mReferencePose = new Pose(keypointCount);
+        mPoints = new float[keypointCount * 2];
+        mStatus = new byte[keypointCount];
+        mFromPoints.alloc(keypointCount);
+    }
+
+    /**
+     * Copies what track and setReference need from the frame into the slot: the Y plane downscaled
+     * by area averaging straight from the zero-copy view of the frame, the orientation, size and timestamp.
+     * Runs on the camera thread, so the frame can be released right after.
+     */
+    static void prepare(YuvFrame frame, LumaFrameView view, FrameSlot slot) {
+        int width = frame.getWidth() / LUMA_DOWNSCALE;
+        int height = frame.getHeight() / LUMA_DOWNSCALE;
+        if (slot.mLumaMat == null || slot.mLumaWidth != width || slot.mLumaHeight != height) {
+            // once, on the first frame of the slot
+            if (slot.mLuma == null || slot.mLuma.capacity() < width * height) {
+                slot.mLuma = ByteBuffer.allocateDirect(width * height);
+            }
+            if (slot.mLumaMat != null) {
+                slot.mLumaMat.release();
+            }
+            slot.mLumaMat = new Mat(height, width, CvType.CV_8UC1, slot.mLuma);
+            slot.mLumaSize.width = width;
+            slot.mLumaSize.height = height;
+            slot.mLumaWidth = width;
+            slot.mLumaHeight = height;
+        }
+        Imgproc.resize(view.wrap(frame), slot.mLumaMat, slot.mLumaSize, 0, 0, Imgproc.INTER_AREA);
+        slot.mRotation = frame.getRotation();
+        slot.mMirror = frame.isMirror();
+        slot.mImageHeight = frame.getOrientedHeight();
+        slot.mImageWidth = frame.getOrientedWidth();
+        slot.mTimestamp = frame.getTimestamp();
+    }
+
+    /**
+     * Forgets the reference, so the next frame has to run the model.
+     */
+    public void reset() {
+        mHasReference = false;
+    }
+
+    /**
+     * Makes the prepared frame of the slot with the keypoints of the slot the reference of the next track.
+     */
+    public void setReference(FrameSlot slot) {
+        slot.mLumaMat.copyTo(mReferenceLuma);
+        mReferencePose.copyFrom(slot.mPose);
+        mReferenceRotation = slot.mRotation;
+        mReferenceMirror = slot.mMirror;
+        mHasReference = true;
+    }
+
+    /**
+     * Moves the keypoints of the reference onto the prepared frame of the slot and writes them into its pose,
+     * with the scores of the reference. Keypoints lost on the way get a score of 0.
+     *
+     * @return share of the confident keypoints of the reference which were tracked, 0 without a reference
+     */
+    public float track(FrameSlot slot) {
+        Pose pose = slot.mPose;
+        pose.setTimestamp(slot.mTimestamp);
+        int count = mReferencePose.getKeypointCount();
+        if (!mHasReference || mReferenceLuma.cols() != slot.mLumaWidth || mReferenceLuma.rows() != slot.mLumaHeight) {
+            for (int i = 0; i < count; i++) {
+                pose.set(i, 0.0f, 0.0f, 0.0f);
+            }
+            return 0.0f;
+        }
+
+        for (int i = 0; i < count; i++) {
+            mPoints[i * 2] = mReferencePose.getX(i) / LUMA_DOWNSCALE;
+            mPoints[i * 2 + 1] = mReferencePose.getY(i) / LUMA_DOWNSCALE;
+        }
+        FrameOrientation.toCamera(mPoints, count, slot.mLumaWidth, slot.mLumaHeight, mReferenceRotation, mReferenceMirror);
+        // OpenCV puts pixel centers at whole coordinates
+        for (int i = 0; i < count * 2; i++) {
+            mPoints[i] -= 0.5f;
+        }
+        mFromPoints.put(0, 0, mPoints);
+
+        Video.calcOpticalFlowPyrLK(mReferenceLuma, slot.mLumaMat, mFromPoints, mToPoints, mStatusMat, mErrorMat,
+                WINDOW_SIZE, PYRAMID_LEVELS, mCriteria);
+        mToPoints.get(0, 0, mPoints);
+        mStatusMat.get(0, 0, mStatus);
+
+        for (int i = 0; i < count * 2; i++) {
+            mPoints[i] += 0.5f;
+        }
+        FrameOrientation.toOriented(mPoints, count, slot.mLumaWidth, slot.mLumaHeight, slot.mRotation, slot.mMirror);
+        int confident = 0;
+        int tracked = 0;
+        for (int i = 0; i < count; i++) {
+            float score = mReferencePose.getScore(i);
+            boolean found = mStatus[i] != 0;
+            if (score >= CropRegion.MIN_KEYPOINT_SCORE) {
+                confident++;
+                if (found) {
+                    tracked++;
+                }
+            }
+            pose.set(i, mPoints[i * 2 + 1] * LUMA_DOWNSCALE, mPoints[i * 2] * LUMA_DOWNSCALE, found ? score : 0.0f);
+        }
+        return confident == 0 ? 0.0f : (float) tracked / confident;
+    }
+
+    public void release() {
+        mReferenceLuma.release();
+        mFromPoints.release();
+        mToPoints.release();
+        mStatusMat.release();
+        mErrorMat.release();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.cameramotiontracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets, in the manner of HdrHistogram:
+ * every power of two is split into 16 linear buckets, so any recorded value is reported within 6.25%
+ * from 16 ns up to about 18 minutes, in a fixed array of 608 counters.
+ * Recording is a single atomic increment, safe from any thread and free of allocations.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values from 2^MAX_EXPONENT on share the last bucket
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos duration in nanoseconds, negative durations count as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mCounts.incrementAndGet(bucketIndex(nanos));
+        mSum.addAndGet(nanos);
+        long max = mMax.get();
+        while (nanos > max && !mMax.compareAndSet(max, nanos)) {
+            max = mMax.get();
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value which falls into the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the statistics of everything recorded so far.
+     *
+     * @param reset whether to start over, so that the next snapshot only covers the durations recorded after this one
+     */
+    public Snapshot snapshot(boolean reset) {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = reset ? mCounts.getAndSet(i, 0) : mCounts.get(i);
+            count += counts[i];
+        }
+        long sum = reset ? mSum.getAndSet(0) : mSum.get();
+        long max = reset ? mMax.getAndSet(0) : mMax.get();
+        return new Snapshot(counts, count, sum, max);
+    }
+
+    /**
+     * Statistics of a histogram at one point in time, durations in nanoseconds.
+     */
+    public static class Snapshot {
+        private final long mCount;
+        private final long mMean;
+        private final long mMax;
+        private final long mP50;
+        private final long mP95;
+        private final long mP99;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            mCount = count;
+            mMean = count > 0 ? sum / count : 0;
+            mMax = max;
+            mP50 = percentile(counts, count, max, 50);
+            mP95 = percentile(counts, count, max, 95);
+            mP99 = percentile(counts, count, max, 99);
+        }
+
+        private static long percentile(long[] counts, long count, long max, double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMean() {
+            return mMean;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public long getP50() {
+            return mP50;
+        }
+
+        public long getP95() {
+            return mP95;
+        }
+
+        public long getP99() {
+            return mP99;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "n %d, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    mCount, mP50 / 1e6, mP95 / 1e6, mP99 / 1e6, mMax / 1e6);
+        }
+    }
+}
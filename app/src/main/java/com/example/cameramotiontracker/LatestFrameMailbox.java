@@ -0,0 +1,28 @@
+package com.example.cameramotiontracker;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Channel holding at most one pending item: a new item replaces the pending one, which is handed back to the
+ * producer as dropped. A consumer which falls behind therefore always continues with the newest frame
+ * and never works through a backlog of stale ones. Any number of producers, one consumer.
+ */
+public class LatestFrameMailbox<T> extends ParkingChannel<T> {
+
+    private final AtomicReference<T> mPending = new AtomicReference<>();
+
+    @Override
+    public T offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        T stale = mPending.getAndSet(item);
+        signalConsumer();
+        return stale;
+    }
+
+    @Override
+    public T poll() {
+        return mPending.getAndSet(null);
+    }
+}
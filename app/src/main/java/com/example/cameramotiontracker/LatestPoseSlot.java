@@ -0,0 +1,80 @@
+package com.example.cameramotiontracker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer handing the latest pose from one producer thread to one consumer thread.
+ * The producer writes into a pose of its own and swaps it with the shared one, the consumer swaps its pose
+ * with the shared one only when that is newer. Neither side ever waits for the other or allocates,
+ * and a pose published while the consumer reads is never torn.
+ */
+public class LatestPoseSlot {
+    private static final int INDEX_MASK = 3;
+    // set on the shared index when the pose behind it was published after the consumer last acquired
+    private static final int FRESH = 4;
+
+    private final Pose[] mPoses = new Pose[3];
+    private final int[] mImageWidths = new int[3];
+    private final int[] mImageHeights = new int[3];
+    private final AtomicInteger mShared = new AtomicInteger(1);
+    // only touched by the producer
+    private int mWriteIndex = 0;
+    // only touched by the consumer
+    private int mReadIndex = 2;
+
+    public LatestPoseSlot(int keypointCount) {
+        for (int i = 0; i < mPoses.length; i++) {
+            mPoses[i] = new Pose(keypointCount);
+        }
+    }
+
+    /**
+     * Publishes a copy of the pose, in pixel coordinates of an image of the given size.
+     * Called by the producer; the pose can be reused right after.
+     */
+    public void publish(Pose pose, int imageWidth, int imageHeight) {
+        mPoses[mWriteIndex].copyFrom(pose);
+        mImageWidths[mWriteIndex] = imageWidth;
+        mImageHeights[mWriteIndex] = imageHeight;
+        mWriteIndex = mShared.getAndSet(mWriteIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Publishes the absence of a pose, getImageWidth of the consumer then returns 0.
+     * Called by the producer, or by any thread once the producer stopped.
+     */
+    public void clear() {
+        mImageWidths[mWriteIndex] = 0;
+        mImageHeights[mWriteIndex] = 0;
+        mWriteIndex = mShared.getAndSet(mWriteIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Makes the latest published pose the one returned by getPose. Called by the consumer.
+     *
+     * @return true when a pose was published since the last acquire
+     */
+    public boolean acquire() {
+        // only the producer sets FRESH, so it cannot be lost between the check and the swap
+        if ((mShared.get() & FRESH) == 0) {
+            return false;
+        }
+        mReadIndex = mShared.getAndSet(mReadIndex) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * Returns the acquired pose. Only valid on the consumer thread until its next acquire.
+     */
+    public Pose getPose() {
+        return mPoses[mReadIndex];
+    }
+
+    public int getImageWidth() {
+        return mImageWidths[mReadIndex];
+    }
+
+    public int getImageHeight() {
+        return mImageHeights[mReadIndex];
+    }
+}
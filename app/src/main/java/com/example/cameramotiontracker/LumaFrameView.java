@@ -0,0 +1,54 @@
+package com.example.cameramotiontracker;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Grayscale view of a camera frame: its Y plane wrapped as a CV_8UC1 Mat with the row stride of the plane,
+ * without copying a pixel, as JavaCamera2View.JavaCamera2Frame.gray() of the OpenCV library does.
+ * For the stages which do not need color, e.g. optical flow and frame differencing.
+ * Every camera image comes with new plane buffers, so the Mat header is rebuilt for every camera frame and only
+ * shared by the stages wrapping the same frame; just the small native header is allocated, never the pixels.
+ * The Mat is only valid until the frame is released.
+ */
+public class LumaFrameView {
+    private Mat mMat;
+    // plane and geometry mMat was built for
+    private ByteBuffer mPlane;
+    private int mWidth;
+    private int mHeight;
+    private int mRowStride;
+
+    /**
+     * Returns the Y plane of the frame as a Mat of its full size. Owned by the view, do not release it.
+     */
+    public Mat wrap(YuvFrame frame) {
+        ByteBuffer plane = frame.getPlane(0);
+        if (frame.getPixelStride(0) != 1) {
+            throw new IllegalArgumentException("Y plane with pixel stride " + frame.getPixelStride(0));
+        }
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int rowStride = frame.getRowStride(0);
+        // only the same frame wrapped again by another stage has the same plane buffer
+        if (mMat == null || plane != mPlane || width != mWidth || height != mHeight || rowStride != mRowStride) {
+            release();
+            mMat = new Mat(height, width, CvType.CV_8UC1, plane, rowStride);
+            mPlane = plane;
+            mWidth = width;
+            mHeight = height;
+            mRowStride = rowStride;
+        }
+        return mMat;
+    }
+
+    public void release() {
+        if (mMat != null) {
+            mMat.release();
+            mMat = null;
+        }
+        mPlane = null;
+    }
+}
@@ -5,19 +5,14 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import android.Manifest;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.ImageFormat;
 import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraManager;
-import android.media.Image;
 import android.media.ImageReader;
 import android.os.Build;
 import android.os.Bundle;
@@ -28,16 +23,15 @@ import android.util.Size;
 import android.util.SparseIntArray;
 import android.view.Surface;
 import android.view.TextureView;
-import android.widget.ImageView;
 import android.widget.Toast;
 
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
-import org.opencv.core.Core;
-import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -51,12 +45,37 @@ public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
 
     // tensorFlow lite setting
-    //final static String MODEL_FILENAME = "lite-model_movenet_singlepose_lightning_tflite_int8_4.tflite";
-    final static String MODEL_FILENAME = "lite-model_movenet_singlepose_thunder_tflite_float16_4.tflite";
+    // input size and type are read from the model, so Lightning (192) and Thunder (256) variants are interchangeable
+    final static String MODEL_FILENAME = "lite-model_movenet_singlepose_lightning_tflite_int8_4.tflite";
+    //final static String MODEL_FILENAME = "lite-model_movenet_singlepose_thunder_tflite_float16_4.tflite";
     //final static String MODEL_FILENAME = "lite-model_movenet_singlepose_lightning_3.tflite";
-    final static org.opencv.core.Size MODEL_IMAGE_SIZE = new org.opencv.core.Size(256, 256);
+    // inference backends in order of preference, the first one which can run the model is used
+    final static String[] INFERENCE_BACKENDS = InferenceBackendPolicy.DEFAULT_BACKENDS;
+    final static int INFERENCE_THREADS = 4;
+    // benchmark backends and thread counts on the first launch instead of using the settings above
+    final static boolean AUTOTUNE_INFERENCE_BACKEND = true;
+    // filter keypoints over consecutive frames, which steadies both the overlay and the crop region
+    final static boolean SMOOTH_POSE = true;
+    // move the crop region ahead of a moving body, so fast motion stays inside it
+    final static boolean PREDICT_CROP_REGION = true;
+    // run the model on keyframes only and track the keypoints with optical flow in between
+    final static boolean SKIP_FRAMES = false;
+    // skip frames in which the scene did not change, keeping the last pose, e.g. for a camera watching an empty room
+    final static boolean GATE_STATIC_FRAMES = false;
+    // run the model only while a person is likely in view, a cheap foreground detector watches the empty scene
+    final static boolean DETECT_PRESENCE = false;
+    // record camera frames and keypoints of every session into the app's external files directory
+    final static boolean RECORD_SESSION = false;
+    // recorded frames are downscaled by this factor, 1 keeps the camera size
+    final static int RECORD_DOWNSCALE = 2;
+    final static boolean RECORD_LUMA_ONLY = false;
+    final static String BACKEND_PREFERENCES = "inference_backend";
 
     final static int EXECUTOR_THREADS = 2;
+    // how often the pipeline latencies and frame rate are logged
+    final static long METRICS_REPORT_INTERVAL_MS = 5000;
+    // threads splitting each YUV conversion, including the image processing thread
+    final static int YUV_CONVERTER_THREADS = 4;
     final static int CAMERA_PIXEL_FORMAT = ImageFormat.YUV_420_888;
 
     final int LENS_FACING_DIRECTION = CameraCharacteristics.LENS_FACING_FRONT;
@@ -67,8 +86,6 @@ public class MainActivity extends AppCompatActivity {
         ORIENTATIONS.append(Surface.ROTATION_180, 180);
         ORIENTATIONS.append(Surface.ROTATION_270, 270);
     }
-    // Inference variables
-    PoseEstimator mPoseEstimator;
     // OpenCV Variables
     private BaseLoaderCallback mLoaderCallback = new BaseLoaderCallback(this) {
         @Override
@@ -86,86 +103,25 @@ public class MainActivity extends AppCompatActivity {
         }
     };
 
-    long cTime;
-    long pTime;
-
     ImageReader mImageReader;
-    ImageReader.OnImageAvailableListener mOnImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+    // pose estimation stages after the camera thread, fed with the newest camera frame by the scheduler
+    FramePipeline mFramePipeline;
+    FrameScheduler mFrameScheduler;
+    // null unless RECORD_SESSION
+    volatile FrameRecorder mFrameRecorder;
+
+    /**
+     * Last pipeline stage, hands the keypoints of a frame to the overlay, which draws them on its GL thread.
+     */
+    private final FramePipeline.Renderer mKeypointRenderer = new FramePipeline.Renderer() {
         @Override
-        public void onImageAvailable(ImageReader reader) {
-            cTime = System.currentTimeMillis();
-            Log.i(TAG, "Overall FPS : " + 1000.0 / (cTime - pTime));
-            pTime = cTime;
-            long ppTime = cTime;
-            Bitmap overlay = Bitmap.createBitmap(mCameraTextureViewSize.getWidth(), Math.round(mCameraTextureViewSize.getHeight() * mCameraTextureViewRatioScale), Bitmap.Config.ARGB_8888);
-            //Bitmap overlay = Bitmap.createBitmap(mOptimalCameraSize.getHeight(), mOptimalCameraSize.getWidth(), Bitmap.Config.ARGB_8888);
-//            Log.i(TAG, "" + mOptimalCameraSize.getWidth() + "x" + mOptimalCameraSize.getHeight());
-            Canvas canvas = new Canvas(overlay);
-            Image img = mImageReader.acquireLatestImage();
-            if(img != null) {
-                try {
-                    //Log.i(TAG, "" + img.getWidth() + "x" + img.getHeight());
-                    ppTime = cTime;
-
-                    Mat mat = ImagePreprocessor.getOpenCVMat(img);
-
-                    cTime = System.currentTimeMillis();
-                    Log.i(TAG, "Time consumed for getOpenCVMat in milli seconds : " + (cTime - ppTime));
-                    ppTime = cTime;
-//                    Log.i(TAG, "" + mCameraRotation);
-
-                    if(mCameraRotation == 270) {
-                        Core.rotate(mat, mat, Core.ROTATE_90_COUNTERCLOCKWISE);
-                    }
-                    if(mCameraRotation == 90) {
-                        Core.rotate(mat, mat, Core.ROTATE_90_CLOCKWISE);
-                    }
-                    if(mCameraRotation == 0) {
-                        Core.rotate(mat, mat, Core.ROTATE_180);
-                    }
-                    Core.flip(mat, mat, 1);
-                    Imgproc.cvtColor(mat, mat, Imgproc.COLOR_BGR2RGB);
-
-                    cTime = System.currentTimeMillis();
-                    Log.i(TAG, "Time consumed for preprocessing before inference in milli seconds : " + (cTime - ppTime));
-                    ppTime = cTime;
-
-                    double[][] bodyKeypoint = mPoseEstimator.runInference(mat);
-
-//                    cTime = System.currentTimeMillis();
-//                    Log.i(TAG, "Time consumed after inference in milli seconds : " + (cTime - ppTime));
-//                    ppTime = cTime;
-//                    mat = mPoseEstimator.runInferenceTest(mat);
-//                    Bitmap overlay = Bitmap.createBitmap(192, 192, Bitmap.Config.ARGB_8888);
-//                    Utils.matToBitmap(mat, overlay);
-                    Paint paint = new Paint();
-                    paint.setStyle(Paint.Style.STROKE);
-                    paint.setColor(Color.rgb(255, 127, 200));
-                    paint.setStrokeWidth(40f);
-                    for (int i = 0; i < bodyKeypoint.length; i++) {
-                        if (bodyKeypoint[i][2] < PoseEstimator.MIN_CROP_KEYPOINT_SCORE) {
-                            continue;
-                        }
-//                        Log.i(TAG, "keypoint X: " + bodyKeypoint[i][1] + " Y:" + bodyKeypoint[i][0]);
-                        float x = (float)bodyKeypoint[i][1] / mOptimalCameraSize.getHeight() * mCameraTextureView.getWidth();
-                        float y = (float)bodyKeypoint[i][0] / mOptimalCameraSize.getWidth() * Math.round(mCameraTextureViewSize.getHeight() * mCameraTextureViewRatioScale);
-                        canvas.drawPoint(x, y, paint);
-                    }
-                    paint.setStrokeWidth(20f);
-                    canvas.drawRect(new Rect(1, 1, mCameraTextureViewSize.getWidth() - 1, Math.round(mCameraTextureViewSize.getHeight() * mCameraTextureViewRatioScale) - 1), paint);
-//                        canvas.drawRect(500, 500, 600, 600, paint);
-
-//                    cTime = System.currentTimeMillis();
-//                    Log.i(TAG, "Time consumed for drawing in milli seconds : " + (cTime - ppTime));
-
-                    runOnUiThread(() -> {
-                        mKeypointImageView.setImageBitmap(overlay);
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                img.close();
+        public void render(FrameSlot slot) {
+            Pose pose = slot.getPose();
+            FrameRecorder recorder = mFrameRecorder;
+            if (recorder != null) {
+                recorder.recordKeypoints(pose);
             }
+            mSkeletonOverlayView.setPose(pose, slot.getImageWidth(), slot.getImageHeight());
         }
     };
 
@@ -183,7 +139,7 @@ public class MainActivity extends AppCompatActivity {
     Size mCameraTextureViewSize;
     float mCameraTextureViewRatioScale;
 
-    ImageView mKeypointImageView;
+    SkeletonOverlayView mSkeletonOverlayView;
     List<Surface> mCameraSurfaceList;
 
     TextureView.SurfaceTextureListener surfaceTextureListener = new TextureView.SurfaceTextureListener() {
@@ -198,6 +154,7 @@ public class MainActivity extends AppCompatActivity {
             mCameraTextureViewRatioScale = getMatrixFixingRatio(width, height, mOptimalCameraSize.getHeight(), mOptimalCameraSize.getWidth(), true);
             scaler.setScale(1F, mCameraTextureViewRatioScale);
             mCameraTextureView.setTransform(scaler);
+            mSkeletonOverlayView.setContentHeightScale(mCameraTextureViewRatioScale);
             // create a lock, send a signal to the condition variable.
             // These statements will prevent this program to go further forward before this task is done.
             mLock.lock();
@@ -306,6 +263,62 @@ public class MainActivity extends AppCompatActivity {
         return (cameraOrientation + deviceOrientation + 360) % 360;
     }
 
+    /**
+     * Clockwise rotation which turns the camera frame into the orientation of the preview.
+     *
+     * @return one of 0, 90, 180, 270
+     */
+    private int getFrameRotation() {
+        switch (mCameraRotation) {
+            case 270:
+                return 270;
+            case 90:
+                return 90;
+            case 0:
+                return 180;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Whether the rotated camera frame is flipped horizontally, as the preview of front camera is.
+     */
+    private boolean isFrameMirrored() {
+        return LENS_FACING_DIRECTION == CameraCharacteristics.LENS_FACING_FRONT;
+    }
+
+    /**
+     * Returns the backend policy of the pose model, tuned for this device on the first launch
+     * and read from the preferences afterwards.
+     */
+    private InferenceBackendPolicy createInferenceBackendPolicy() {
+        if (AUTOTUNE_INFERENCE_BACKEND) {
+            SharedPreferences preferences = getSharedPreferences(BACKEND_PREFERENCES, MODE_PRIVATE);
+            BackendAutotuner.Store store = new BackendAutotuner.Store() {
+                @Override
+                public String get(String key) {
+                    return preferences.getString(key, null);
+                }
+
+                @Override
+                public void put(String key, String value) {
+                    preferences.edit().putString(key, value).apply();
+                }
+            };
+            try {
+                MappedByteBuffer model = PoseEstimator.loadModelFileFromAsset(getApplicationContext(), MODEL_FILENAME);
+                BackendAutotuner.Config config = new BackendAutotuner(model).loadOrTune(store,
+                        BackendAutotuner.cacheKey(model, Build.FINGERPRINT), BackendAutotuner.defaultCandidates(INFERENCE_THREADS));
+                Log.i(TAG, "Inference backend for this device: " + config);
+                return BackendAutotuner.toPolicy(config);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return new InferenceBackendPolicy(INFERENCE_THREADS, INFERENCE_BACKENDS);
+    }
+
     private void shutdownExecutorService() {
         try {
             // Wait a while for existing tasks to terminate
@@ -369,13 +382,27 @@ public class MainActivity extends AppCompatActivity {
 
         //androidCamera.getOptimalSize()
         mImageReader = ImageReader.newInstance(mOptimalCameraSize.getWidth(), mOptimalCameraSize.getHeight(), CAMERA_PIXEL_FORMAT, 5);
-        mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mHandler);
         mCameraSurfaceList.add(mImageReader.getSurface());
-        // initialize PoseEstimator
-        mPoseEstimator = new PoseEstimator(getApplicationContext(), MODEL_FILENAME, mOptimalCameraSize.getHeight(), mOptimalCameraSize.getWidth(), MODEL_IMAGE_SIZE);
+        // the PoseEstimator is created on the inference thread of the pipeline
+        mFramePipeline = new FramePipeline(this::createPoseEstimator, mKeypointRenderer, FramePipeline.DEFAULT_SLOT_COUNT);
+        if (SKIP_FRAMES) {
+            mFramePipeline.setFrameSkipping(new FrameSkipPolicy(mFramePipeline.getPoseEstimator().getKeypointCount()));
+        }
+        if (GATE_STATIC_FRAMES) {
+            mFramePipeline.setMotionGate(new MotionGate());
+        }
+        if (DETECT_PRESENCE) {
+            mFramePipeline.setPresenceDetector(new PresenceDetector());
+        }
+        mFramePipeline.getMetrics().startReporting(METRICS_REPORT_INTERVAL_MS, snapshot -> Log.i(TAG, "Pipeline: " + snapshot));
+        mFramePipeline.start();
+        mFrameScheduler = new FrameScheduler(mFramePipeline);
+        mFrameScheduler.setOrientation(getFrameRotation(), isFrameMirrored());
+        if (RECORD_SESSION) {
+            startRecording();
+        }
+        mImageReader.setOnImageAvailableListener(mFrameScheduler, mHandler);
 
-        //mKeypointImageView.setImageMatrix(getMatrixFixingRatio(mKeypointImageView.getWidth(), mKeypointImageView.getHeight(),
-        //        mOptimalCameraSize.getHeight(), mOptimalCameraSize.getWidth(), true));
         // if all conditions are matched, start camera request
         try {
             androidCamera.startCamera(getApplicationContext(), mExecutorService);
@@ -385,6 +412,21 @@ public class MainActivity extends AppCompatActivity {
         androidCamera.startCameraRequest(mCameraSurfaceList);
     }
 
+    /**
+     * Creates the PoseEstimator on the thread which runs and closes it, as the GPU delegate must stay on one thread.
+     */
+    private PoseEstimator createPoseEstimator() {
+        PoseEstimator poseEstimator = new PoseEstimator(getApplicationContext(), MODEL_FILENAME, mOptimalCameraSize.getHeight(), mOptimalCameraSize.getWidth(),
+                createInferenceBackendPolicy());
+        if (SMOOTH_POSE) {
+            poseEstimator.setPoseSmoother(new PoseSmoother(poseEstimator.getKeypointCount()));
+        }
+        if (PREDICT_CROP_REGION) {
+            poseEstimator.setCropPredictor(new CropPredictor());
+        }
+        return poseEstimator;
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -398,6 +440,8 @@ public class MainActivity extends AppCompatActivity {
             mLoaderCallback.onManagerConnected(LoaderCallbackInterface.SUCCESS);
         }
 
+        YuvConverter.setThreadCount(YUV_CONVERTER_THREADS);
+
         // make pool of executors
         startExecutorService();
         // set up camera
@@ -423,13 +467,43 @@ public class MainActivity extends AppCompatActivity {
         mCameraSurfaceList = new ArrayList<>();
     }
 
+    private void startRecording() {
+        File file = new File(getExternalFilesDir(null), "session-" + System.currentTimeMillis() + ".cmtr");
+        try {
+            mFrameRecorder = new FrameRecorder(file, mOptimalCameraSize.getWidth(), mOptimalCameraSize.getHeight(),
+                    RECORD_DOWNSCALE, RECORD_LUMA_ONLY, mFramePipeline.getPoseEstimator().getKeypointCount(), FrameRecorder.DEFAULT_FRAME_BUFFERS);
+            mFrameScheduler.setRecorder(mFrameRecorder);
+            Log.i(TAG, "Recording to " + file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finishes the recording, once the camera and the pipeline are stopped.
+     */
+    private void stopRecording() {
+        if (mFrameRecorder == null) {
+            return;
+        }
+        try {
+            mFrameRecorder.close();
+            Log.i(TAG, "Recorded " + mFrameRecorder.getRecordedFrames() + " frames, dropped "
+                    + mFrameRecorder.getDroppedFrames());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mFrameRecorder = null;
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
         // get TextureView from the layout
         mCameraTextureView = findViewById(R.id.cameraTextureView);
 
-        mKeypointImageView = findViewById(R.id.imageView);
+        mSkeletonOverlayView = findViewById(R.id.skeletonOverlayView);
+        mSkeletonOverlayView.onResume();
 
         mCameraRotation = calculateCameraRotation();
 
@@ -452,6 +526,7 @@ public class MainActivity extends AppCompatActivity {
             mCameraTextureViewRatioScale = getMatrixFixingRatio(textureViewWidth, textureViewHeight, mOptimalCameraSize.getHeight(), mOptimalCameraSize.getWidth(), true);
             scaler.setScale(1F, mCameraTextureViewRatioScale);
             mCameraTextureView.setTransform(scaler);
+            mSkeletonOverlayView.setContentHeightScale(mCameraTextureViewRatioScale);
         }
         mExecutorService.execute(new CameraRunTask());
     }
@@ -465,6 +540,16 @@ public class MainActivity extends AppCompatActivity {
         Log.d("onPause", "finished stopping camera");
         shutdownExecutorService();
         stopImageProcessingThread();
+        if (mFramePipeline != null) {
+            // also closes the PoseEstimator on its inference thread
+            mFramePipeline.stop();
+            Log.i(TAG, "Pipeline: " + mFramePipeline.getMetrics().snapshot(false));
+            mFramePipeline = null;
+            mFrameScheduler = null;
+        }
+        mSkeletonOverlayView.clearPose();
+        mSkeletonOverlayView.onPause();
+        stopRecording();
         Log.d("onPause", "finished shutting down background Threads");
         mCameraSurfaceList.clear();
         super.onPause();
@@ -485,5 +570,8 @@ public class MainActivity extends AppCompatActivity {
     public void onConfigurationChanged(@NonNull Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
         mCameraRotation = calculateCameraRotation();
+        if (mFrameScheduler != null) {
+            mFrameScheduler.setOrientation(getFrameRotation(), isFrameMirrored());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Decides which frames are worth processing at all: a frame only runs the pipeline when enough of the scene
+ * changed since the last frame which did, or when that frame is older than the maximum staleness.
+ * While the scene is static the last pose stays on display and neither preprocessing nor the model run.
+ * The change is measured by a FrameDifferencer on the Y plane downscaled by getDownscale, as the share of pixels
+ * which differ by more than getPixelThreshold from the last processed frame. Comparing against the last processed
+ * frame rather than the previous one lets slow changes add up until they open the gate.
+ */
+public class MotionGate {
+    public static final int DEFAULT_DOWNSCALE = 8;
+    public static final int DEFAULT_PIXEL_THRESHOLD = 16;
+    public static final float DEFAULT_MIN_CHANGED = 0.005f;
+    public static final long DEFAULT_MAX_STALENESS_NANOS = 1000000000L;
+
+    private final int mDownscale;
+    private final int mPixelThreshold;
+    private final float mMinChanged;
+    private final long mMaxStalenessNanos;
+
+    // only touched by the camera thread
+    private boolean mHasPassed;
+    private long mLastPassedTimestamp;
+
+    public MotionGate() {
+        this(DEFAULT_DOWNSCALE, DEFAULT_PIXEL_THRESHOLD, DEFAULT_MIN_CHANGED, DEFAULT_MAX_STALENESS_NANOS);
+    }
+
+    /**
+     * @param downscale factor by which the Y plane is downscaled before it is compared
+     * @param pixelThreshold difference of luma values from which a downscaled pixel counts as changed
+     * @param minChanged share of changed pixels from which the frame is processed
+     * @param maxStalenessNanos time after which a frame is processed even if nothing changed
+     */
+    public MotionGate(int downscale, int pixelThreshold, float minChanged, long maxStalenessNanos) {
+        mDownscale = downscale;
+        mPixelThreshold = pixelThreshold;
+        mMinChanged = minChanged;
+        mMaxStalenessNanos = maxStalenessNanos;
+    }
+
+    public int getDownscale() {
+        return mDownscale;
+    }
+
+    public int getPixelThreshold() {
+        return mPixelThreshold;
+    }
+
+    /**
+     * Returns whether the frame is processed. A processed frame becomes the one the next frames are compared with.
+     * Called for every frame, always from the same thread.
+     *
+     * @param changed share of pixels which changed since the last processed frame, 1 if there is none
+     * @param timestamp timestamp of the frame in nanoseconds
+     */
+    public boolean pass(float changed, long timestamp) {
+        long sincePassed = timestamp - mLastPassedTimestamp;
+        // a timestamp going back means a new source, e.g. the camera restarted
+        if (!mHasPassed || changed >= mMinChanged || sincePassed >= mMaxStalenessNanos || sincePassed < 0) {
+            mHasPassed = true;
+            mLastPassedTimestamp = timestamp;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lets the next frame pass, e.g. because the frame it would be compared with was lost.
+     */
+    public void reset() {
+        mHasPassed = false;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.cameramotiontracker;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Base of channels with a single consumer thread, which is parked in take until a producer signals a new item.
+ */
+abstract class ParkingChannel<T> implements FrameChannel<T> {
+
+    private volatile Thread mWaitingConsumer;
+
+    /**
+     * Wakes the consumer up if it waits in take.
+     * Producers call this right after publishing an item with a volatile write,
+     * which can't be reordered with the volatile read here.
+     */
+    protected final void signalConsumer() {
+        Thread consumer = mWaitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    @Override
+    public final T take() throws InterruptedException {
+        T item = poll();
+        if (item != null) {
+            return item;
+        }
+        // announce the wait before looking again, so that an item published in between either is seen or unparks
+        mWaitingConsumer = Thread.currentThread();
+        try {
+            while ((item = poll()) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            mWaitingConsumer = null;
+        }
+        return item;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.cameramotiontracker;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of every FramePipeline stage, the end-to-end latency from the camera frame to the rendered keypoints,
+ * the rendered frame rate and the FrameCounters. Stages record System.nanoTime() durations without allocating;
+ * snapshots are only taken when exported, e.g. every few seconds with startReporting.
+ */
+public class PipelineMetrics {
+    public static final int STAGE_PREPROCESS = 0;
+    public static final int STAGE_INFERENCE = 1;
+    public static final int STAGE_RENDER = 2;
+    // from the frame being received on the camera thread until it is rendered, including time spent waiting
+    public static final int STAGE_END_TO_END = 3;
+    private static final String[] STAGE_NAMES = {"preprocess", "inference", "render", "end-to-end"};
+
+    // frames the rendered frame rate is averaged over
+    public static final int FRAME_RATE_WINDOW = 30;
+
+    /**
+     * Receives exported snapshots, on the reporting thread.
+     */
+    public interface Listener {
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    private final LatencyHistogram[] mStages = new LatencyHistogram[STAGE_NAMES.length];
+    private final FrameRateMeter mFrameRate = new FrameRateMeter(FRAME_RATE_WINDOW);
+    private final FrameCounters mCounters = new FrameCounters();
+    private ScheduledExecutorService mReporter;
+
+    public PipelineMetrics() {
+        for (int i = 0; i < mStages.length; i++) {
+            mStages[i] = new LatencyHistogram();
+        }
+    }
+
+    public FrameCounters getCounters() {
+        return mCounters;
+    }
+
+    public FrameRateMeter getFrameRate() {
+        return mFrameRate;
+    }
+
+    public LatencyHistogram getStage(int stage) {
+        return mStages[stage];
+    }
+
+    /**
+     * Records how long a stage took for one frame.
+     *
+     * @param startNanos System.nanoTime() when the stage started
+     * @param endNanos System.nanoTime() when the stage finished
+     */
+    public void record(int stage, long startNanos, long endNanos) {
+        mStages[stage].record(endNanos - startNanos);
+    }
+
+    /**
+     * Returns the current statistics.
+     *
+     * @param reset whether to restart the latency histograms, so that every snapshot covers one reporting interval
+     */
+    public Snapshot snapshot(boolean reset) {
+        LatencyHistogram.Snapshot[] stages = new LatencyHistogram.Snapshot[mStages.length];
+        for (int i = 0; i < mStages.length; i++) {
+            stages[i] = mStages[i].snapshot(reset);
+        }
+        return new Snapshot(stages, mFrameRate.getFramesPerSecond(), mCounters.toString());
+    }
+
+    /**
+     * Passes a snapshot of the latest interval to the listener every intervalMillis, on a thread of its own.
+     */
+    public synchronized void startReporting(long intervalMillis, Listener listener) {
+        stopReporting();
+        mReporter = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "PipelineMetrics"));
+        mReporter.scheduleAtFixedRate(() -> listener.onSnapshot(snapshot(true)), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (mReporter != null) {
+            mReporter.shutdownNow();
+            mReporter = null;
+        }
+    }
+
+    /**
+     * Statistics of all stages at one point in time.
+     */
+    public static class Snapshot {
+        private final LatencyHistogram.Snapshot[] mStages;
+        private final double mFramesPerSecond;
+        private final String mCounters;
+
+        Snapshot(LatencyHistogram.Snapshot[] stages, double framesPerSecond, String counters) {
+            mStages = stages;
+            mFramesPerSecond = framesPerSecond;
+            mCounters = counters;
+        }
+
+        public LatencyHistogram.Snapshot getStage(int stage) {
+            return mStages[stage];
+        }
+
+        public double getFramesPerSecond() {
+            return mFramesPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format(Locale.US, "%.1f fps", mFramesPerSecond));
+            for (int i = 0; i < mStages.length; i++) {
+                builder.append("; ").append(STAGE_NAMES[i]).append(": ").append(mStages[i]);
+            }
+            return builder.append("; frames: ").append(mCounters).toString();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Keypoints of one person in a frame: y, x and score of every joint, one after the other in a single float array,
+ * in pixel coordinates of the oriented image. Joints are indexed as MoveNet outputs them.
+ * A Pose is allocated once and written in place for every frame.
+ */
+public final class Pose {
+    public static final int NOSE = 0;
+    public static final int LEFT_EYE = 1;
+    public static final int RIGHT_EYE = 2;
+    public static final int LEFT_EAR = 3;
+    public static final int RIGHT_EAR = 4;
+    public static final int LEFT_SHOULDER = 5;
+    public static final int RIGHT_SHOULDER = 6;
+    public static final int LEFT_ELBOW = 7;
+    public static final int RIGHT_ELBOW = 8;
+    public static final int LEFT_WRIST = 9;
+    public static final int RIGHT_WRIST = 10;
+    public static final int LEFT_HIP = 11;
+    public static final int RIGHT_HIP = 12;
+    public static final int LEFT_KNEE = 13;
+    public static final int RIGHT_KNEE = 14;
+    public static final int LEFT_ANKLE = 15;
+    public static final int RIGHT_ANKLE = 16;
+    public static final int JOINT_COUNT = 17;
+
+    // values of a keypoint, as the model outputs them
+    static final int Y = 0;
+    static final int X = 1;
+    static final int SCORE = 2;
+    static final int STRIDE = 3;
+
+    private final float[] mValues;
+    private long mTimestamp;
+
+    public Pose() {
+        this(JOINT_COUNT);
+    }
+
+    public Pose(int keypointCount) {
+        mValues = new float[keypointCount * STRIDE];
+    }
+
+    public int getKeypointCount() {
+        return mValues.length / STRIDE;
+    }
+
+    public float getY(int keypoint) {
+        return mValues[keypoint * STRIDE + Y];
+    }
+
+    public float getX(int keypoint) {
+        return mValues[keypoint * STRIDE + X];
+    }
+
+    public float getScore(int keypoint) {
+        return mValues[keypoint * STRIDE + SCORE];
+    }
+
+    public void set(int keypoint, float y, float x, float score) {
+        int index = keypoint * STRIDE;
+        mValues[index + Y] = y;
+        mValues[index + X] = x;
+        mValues[index + SCORE] = score;
+    }
+
+    /**
+     * Returns the timestamp of the frame in nanoseconds.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        mTimestamp = timestamp;
+    }
+
+    public void copyFrom(Pose pose) {
+        System.arraycopy(pose.mValues, 0, mValues, 0, mValues.length);
+        mTimestamp = pose.mTimestamp;
+    }
+
+    /**
+     * Returns y, x and score of every keypoint, the Pose itself rather than a copy.
+     */
+    float[] getValues() {
+        return mValues;
+    }
+}
@@ -2,242 +2,322 @@ package com.example.cameramotiontracker;
 
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
+import android.media.Image;
 import android.util.Log;
-import org.opencv.core.Mat;
 import org.opencv.core.Size;
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-
-import org.tensorflow.lite.gpu.CompatibilityList;
-import org.tensorflow.lite.gpu.GpuDelegate;
 
 
 public class PoseEstimator {
     public Interpreter mTensorflowLiteInterpreter;
+    private InferenceBackend mBackend;
 
-    public final static double MIN_CROP_KEYPOINT_SCORE = 0.5;
+    public final static double MIN_CROP_KEYPOINT_SCORE = CropRegion.MIN_KEYPOINT_SCORE;
     private final static String TAG = "PoseEstimator";
 
-    private final static HashMap<String, Integer> KEYPOINT_DICT = new HashMap<>();
-
-    static {
-        KEYPOINT_DICT.put("nose", 0);
-        KEYPOINT_DICT.put("left_eye", 1);
-        KEYPOINT_DICT.put("right_eye", 2);
-        KEYPOINT_DICT.put("left_ear", 3);
-        KEYPOINT_DICT.put("right_ear", 4);
-        KEYPOINT_DICT.put("left_shoulder", 5);
-        KEYPOINT_DICT.put("right_shoulder", 6);
-        KEYPOINT_DICT.put("left_elbow", 7);
-        KEYPOINT_DICT.put("right_elbow", 8);
-        KEYPOINT_DICT.put("left_wrist", 9);
-        KEYPOINT_DICT.put("right_wrist", 10);
-        KEYPOINT_DICT.put("left_hip", 11);
-        KEYPOINT_DICT.put("right_hip", 12);
-        KEYPOINT_DICT.put("left_knee", 13);
-        KEYPOINT_DICT.put("right_knee", 14);
-        KEYPOINT_DICT.put("left_ankle", 15);
-        KEYPOINT_DICT.put("right_ankle", 16);
-    }
-
-    private final static String[] TORSO_JOINTS = new String[]{"left_shoulder", "right_shoulder", "left_hip", "right_hip"};
-
-    private final static int CROP_REGION_Y_MIN = 0;
-    private final static int CROP_REGION_X_MIN = 1;
-    private final static int CROP_REGION_Y_MAX = 2;
-    private final static int CROP_REGION_X_MAX = 3;
-    private final static int CROP_REGION_HEIGHT = 4;
-    private final static int CROP_REGION_WIDTH = 5;
-
-    private double[] mCropRegion;
+    public final static int DEFAULT_THREADS = 4;
+
+    // MoveNet takes pixel values as they are
+    public final static float DEFAULT_INPUT_MEAN = 0.0f;
+    public final static float DEFAULT_INPUT_STD = 1.0f;
+
+    // crop region of the next frame, one of mCropRegions used in turn. Inference never writes into the array
+    // published last nor the one before, so preprocess on another thread copies a consistent crop region
+    // unless it stalls between reading the reference and copying four values for two whole inferences.
+    private volatile double[] mCropRegion;
+    private final double[][] mCropRegions = new double[3][CropRegion.SIZE];
+    private int mNextCropRegion = 1;
     private Size mCropSize;
 
+    // tensors as declared by the model, input [1, height, width, 3] and output [..., keypoints, 3]
+    private TensorSpec mInputSpec;
+    private TensorSpec mOutputSpec;
+    // mapping from pixel value to input element, p * scale + offset
+    private float mInputValueScale;
+    private float mInputValueOffset;
+
+    // model input tensor data of runInference, which preprocessing writes straight into
+    private ByteBuffer mInputBuffer;
+    // model output tensor data and its dequantized values
+    private ByteBuffer mOutputBuffer;
+    private float[] mOutputValues;
+
+    // keypoints of runInference, reused by every inference
+    private Pose mPose;
+    // filters keypoints of consecutive frames in infer, null if they are used as the model outputs them
+    private PoseSmoother mPoseSmoother;
+    // moves crop regions ahead of the body in infer, null to crop around the body where it is
+    private CropPredictor mCropPredictor;
+    // slot of runInference(Image), backed by mInputBuffer
+    private FrameSlot mFrameSlot;
+    // camera image of runInference(Image), wrapped without copying
+    private final YuvFrame mYuvFrame = new YuvFrame();
+
+
+    public PoseEstimator(Context context, String filename, int imageHeight, int imageWidth) {
+        this(context, filename, imageHeight, imageWidth, new InferenceBackendPolicy(DEFAULT_THREADS));
+    }
 
-    public PoseEstimator(Context context, String filename, int imageHeight, int imageWidth, Size cropSize) {
-        Interpreter.Options options = new Interpreter.Options();
-        CompatibilityList compatList = new CompatibilityList();
-
-//        if(compatList.isDelegateSupportedOnThisDevice()){
-//            // if the device has a supported GPU, add the GPU delegate
-//            Log.i(TAG, "GPU Found!");
-//            GpuDelegate.Options delegateOptions = compatList.getBestOptionsForThisDevice();
-//            GpuDelegate gpuDelegate = new GpuDelegate(delegateOptions);
-//            options.addDelegate(gpuDelegate);
-//        } else {
-//            // if the GPU is not supported, run on 4 threads
-//            options.setNumThreads(4);
-//        }
-//        GpuDelegate gpuDelegate = new GpuDelegate();
-//        options.addDelegate(gpuDelegate);
-
-        options.setNumThreads(4);
+    /**
+     * Loads the model on the first backend of the policy which can run it
+     * and binds buffers for its input and output tensors.
+     * The crop size, input element type and quantization all follow the tensors of the model.
+     */
+    public PoseEstimator(Context context, String filename, int imageHeight, int imageWidth,
+                         InferenceBackendPolicy backendPolicy) {
+        MappedByteBuffer model;
         try {
-            mTensorflowLiteInterpreter = new Interpreter(loadModelFileFromAsset(context, filename), options);
+            model = loadModelFileFromAsset(context, filename);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new IllegalArgumentException("Failed to load model " + filename, e);
+        }
+        InferenceBackendPolicy.Selection<Interpreter> selection = backendPolicy.select(
+                backend -> new Interpreter(model, backend.createOptions(backendPolicy.getThreadCount())));
+        mTensorflowLiteInterpreter = selection.getResult();
+        mBackend = selection.getBackend();
+        Log.i(TAG, "Running " + filename + " on " + mBackend.getName() + " backend");
+
+        CropRegion.init(imageHeight, imageWidth, mCropRegions[0]);
+        mCropRegion = mCropRegions[0];
+
+        mInputSpec = toTensorSpec(mTensorflowLiteInterpreter.getInputTensor(0));
+        mOutputSpec = toTensorSpec(mTensorflowLiteInterpreter.getOutputTensor(0));
+        Log.i(TAG, filename + ": input " + mInputSpec + ", output " + mOutputSpec);
+        if (mInputSpec.getShape().length != 4 || mInputSpec.getDimension(3) != 3) {
+            throw new IllegalArgumentException("Unsupported model input " + mInputSpec);
+        }
+        if (mOutputSpec.getDimension(-1) != 3) {
+            throw new IllegalArgumentException("Unsupported model output " + mOutputSpec);
         }
-        mCropRegion = initCropRegion(imageHeight, imageWidth);
-        mCropSize = cropSize;
-//        mat = new Mat(img.getHeight(), img.getWidth(), CvType.CV_8UC4);
-    }
 
-    private static MappedByteBuffer loadModelFileFromAsset(Context context, String filename) throws IOException {
-        AssetFileDescriptor fileDescriptor = context.getAssets().openFd(filename);
-        FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-        FileChannel fileChannel = inputStream.getChannel();
-        long startOffset = fileDescriptor.getStartOffset();
-        long length = fileDescriptor.getDeclaredLength();
-        return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, length);
-    }
+        mCropSize = new Size(mInputSpec.getDimension(2), mInputSpec.getDimension(1));
+        mInputBuffer = ByteBuffer.allocateDirect(mInputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        setInputNormalization(DEFAULT_INPUT_MEAN, DEFAULT_INPUT_STD);
 
-    public float[][][][] predict(ByteBuffer buffer) {
-        float[][][][] output = new float[1][1][17][3];
-        mTensorflowLiteInterpreter.run(buffer, output);
-        return output;
+        mOutputBuffer = ByteBuffer.allocateDirect(mOutputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        mOutputValues = new float[mOutputSpec.getElementCount()];
+        mPose = new Pose(mOutputSpec.getDimension(-2));
+        mFrameSlot = new FrameSlot(mInputBuffer, mCropRegion.length, mPose.getKeypointCount());
     }
 
-    public double[][] runInference(Mat image) {
-        double[][] bodyKeypoint = new double[17][3];
+    /**
+     * Creates a frame slot with its own input buffer, for pipelines preprocessing the next frame
+     * while this estimator runs inference on the previous one.
+     */
+    public FrameSlot createFrameSlot() {
+        ByteBuffer input = ByteBuffer.allocateDirect(mInputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        return new FrameSlot(input, mCropRegion.length, mPose.getKeypointCount());
+    }
 
-        int imageHeight = image.height();
-        int imageWidth = image.width();
-//        Log.i("runInference", "image Size" + imageWidth + "x" + imageHeight);
-        //Log.i("runInference", "mCropRegion: " + Arrays.toString(mCropRegion));
+    /**
+     * Returns the name of the backend the model runs on.
+     */
+    public String getBackendName() {
+        return mBackend.getName();
+    }
 
-        image = ImagePreprocessor.PadCropResize(image, (float)mCropRegion[CROP_REGION_X_MIN],
-                (float)mCropRegion[CROP_REGION_Y_MIN], (float)mCropRegion[CROP_REGION_X_MAX], (float)mCropRegion[CROP_REGION_Y_MAX], mCropSize);
+    /**
+     * Sets the normalization the model expects, (pixel - mean) / std, applied before quantization of the input.
+     */
+    public void setInputNormalization(float mean, float std) {
+        mInputValueScale = mInputSpec.getInputValueScale(mean, std);
+        mInputValueOffset = mInputSpec.getInputValueOffset(mean, std);
+    }
 
+    /**
+     * Returns the size of the model input, which every crop is resized to.
+     */
+    public Size getInputSize() {
+        return mCropSize;
+    }
 
-        ByteBuffer input = ImagePreprocessor.getByteBufferFromMat(image);
-        float[][][][] output = this.predict(input);
-        for (int i = 0; i < 17; i++) {
-            bodyKeypoint[i][0] = (mCropRegion[CROP_REGION_Y_MIN] + output[0][0][i][0] * mCropRegion[CROP_REGION_HEIGHT]) * imageHeight;
-            bodyKeypoint[i][1] = (mCropRegion[CROP_REGION_X_MIN] + output[0][0][i][1] * mCropRegion[CROP_REGION_WIDTH]) * imageWidth;
-            bodyKeypoint[i][2] = output[0][0][i][2];
-        }
-        mCropRegion = determineCropRegion(bodyKeypoint, imageHeight, imageWidth);
-        return bodyKeypoint;
+    /**
+     * Sets the filter applied to the keypoints of every frame before the next crop region is determined from them,
+     * or null to use the keypoints as the model outputs them. Only called while infer is not running.
+     */
+    public void setPoseSmoother(PoseSmoother smoother) {
+        mPoseSmoother = smoother;
     }
-    public Mat runInferenceTest(Mat image) {
-        double[][] bodyKeypoint = new double[17][3];
 
-        int imageHeight = image.height();
-        int imageWidth = image.width();
-//        Log.i("runInference", "image Size" + imageWidth + "x" + imageHeight);
-//        Log.i("runInference", "mCropRegion: " + Arrays.toString(mCropRegion));
+    /**
+     * Sets how the crop region of the following frames is determined in infer, or null to crop around
+     * the body where it is. Only called while infer is not running.
+     */
+    public void setCropPredictor(CropPredictor predictor) {
+        mCropPredictor = predictor;
+    }
 
-        image = ImagePreprocessor.PadCropResize(image, (float)mCropRegion[CROP_REGION_X_MIN],
-                (float)mCropRegion[CROP_REGION_Y_MIN], (float)mCropRegion[CROP_REGION_X_MAX], (float)mCropRegion[CROP_REGION_Y_MAX], mCropSize);
+    /**
+     * Returns the number of keypoints the model outputs for every frame.
+     */
+    public int getKeypointCount() {
+        return mPose.getKeypointCount();
+    }
 
+    static TensorSpec toTensorSpec(Tensor tensor) {
+        Tensor.QuantizationParams quantization = tensor.quantizationParams();
+        return new TensorSpec(tensor.shape(), toElementType(tensor.dataType()),
+                quantization.getScale(), quantization.getZeroPoint());
+    }
 
-        ByteBuffer input = ImagePreprocessor.getByteBufferFromMat(image);
-        float[][][][] output = this.predict(input);
-//        Log.i("runInference", "output: " + Arrays.toString(output[0][0][0]));
-        for (int i = 0; i < 17; i++) {
-            bodyKeypoint[i][0] = (mCropRegion[CROP_REGION_Y_MIN] + output[0][0][i][0] * mCropRegion[CROP_REGION_HEIGHT]) * imageHeight;
-            bodyKeypoint[i][1] = (mCropRegion[CROP_REGION_X_MIN] + output[0][0][i][1] * mCropRegion[CROP_REGION_WIDTH]) * imageWidth;
-            bodyKeypoint[i][2] = output[0][0][i][2];
+    private static int toElementType(DataType dataType) {
+        switch (dataType) {
+            case UINT8:
+                return TensorSpec.ELEMENT_TYPE_UINT8;
+            case INT8:
+                return TensorSpec.ELEMENT_TYPE_INT8;
+            case FLOAT32:
+                return TensorSpec.ELEMENT_TYPE_FLOAT32;
+            default:
+                throw new IllegalArgumentException("Unsupported tensor type " + dataType);
         }
-        mCropRegion = determineCropRegion(bodyKeypoint, imageHeight, imageWidth);
-        return image;
     }
 
-    public double[] initCropRegion(int imageHeight, int imageWidth) {
-        double[] region = new double[6];
+    static MappedByteBuffer loadModelFileFromAsset(Context context, String filename) throws IOException {
+        AssetFileDescriptor fileDescriptor = context.getAssets().openFd(filename);
+        FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
+        FileChannel fileChannel = inputStream.getChannel();
+        long startOffset = fileDescriptor.getStartOffset();
+        long length = fileDescriptor.getDeclaredLength();
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, length);
+    }
 
-        if (imageWidth > imageHeight) {
-            region[CROP_REGION_HEIGHT] = 1.0 * imageWidth / imageHeight;
-            region[CROP_REGION_WIDTH] = 1.0;
-            region[CROP_REGION_Y_MIN] = (1.0 - region[CROP_REGION_HEIGHT]) / 2;
-            region[CROP_REGION_X_MIN] = 0.0;
-        } else {
-            region[CROP_REGION_HEIGHT] = 1.0;
-            region[CROP_REGION_WIDTH] = 1.0 * imageHeight / imageWidth;
-            region[CROP_REGION_Y_MIN] = 0.0;
-            region[CROP_REGION_X_MIN] = (1.0 - region[CROP_REGION_WIDTH]) / 2;
+    /**
+     * Runs the model on the given input.
+     *
+     * @return dequantized model output, [y, x, score] of every keypoint, which is overwritten by the next call
+     */
+    public float[] predict(ByteBuffer buffer) {
+        mOutputBuffer.rewind();
+        mTensorflowLiteInterpreter.run(buffer, mOutputBuffer);
+        mOutputSpec.readValues(mOutputBuffer, mOutputValues);
+        return mOutputValues;
+    }
+
+    /**
+     * Releases the interpreter and the native memory held by this estimator.
+     */
+    public void close() {
+        if (mTensorflowLiteInterpreter != null) {
+            mTensorflowLiteInterpreter.close();
+            mTensorflowLiteInterpreter = null;
         }
-        region[CROP_REGION_Y_MAX] = region[CROP_REGION_Y_MIN] + region[CROP_REGION_HEIGHT];
-        region[CROP_REGION_X_MAX] = region[CROP_REGION_X_MIN] + region[CROP_REGION_WIDTH];
-        return region;
-    }
-
-    public boolean torsoVisible(double[][] keypoints) {
-        return (keypoints[KEYPOINT_DICT.get("left_hip")][2] > MIN_CROP_KEYPOINT_SCORE
-                || keypoints[KEYPOINT_DICT.get("right_hip")][2] > MIN_CROP_KEYPOINT_SCORE)
-                && (keypoints[KEYPOINT_DICT.get("left_shoulder")][2] > MIN_CROP_KEYPOINT_SCORE
-                || keypoints[KEYPOINT_DICT.get("right_shoulder")][2] > MIN_CROP_KEYPOINT_SCORE);
-    }
-
-    public List<Double> determineBodyRange(double[][] bodyKeypoint, double centerY, double centerX) {
-        double maxBodyYRange = 0.0;
-        double maxBodyXRange = 0.0;
-
-        double distY;
-        double distX;
-
-        for (String joint : KEYPOINT_DICT.keySet()) {
-            if (bodyKeypoint[KEYPOINT_DICT.get(joint)][2] < MIN_CROP_KEYPOINT_SCORE) {
-                continue;
-            }
-            distY = Math.abs(centerY - bodyKeypoint[KEYPOINT_DICT.get(joint)][0]);
-            distX = Math.abs(centerX - bodyKeypoint[KEYPOINT_DICT.get(joint)][1]);
-            if (distY > maxBodyYRange) {
-                maxBodyYRange = distY;
-            }
-            if (distX > maxBodyXRange) {
-                maxBodyXRange = distX;
-            }
+        if (mBackend != null) {
+            mBackend.close();
+            mBackend = null;
         }
-        return Arrays.asList(maxBodyYRange, maxBodyXRange);
+        mInputBuffer = null;
+        mOutputBuffer = null;
+    }
+
+    /**
+     * Runs inference directly on the camera image.
+     * The current crop region is sampled from the YUV planes into the model input in one native pass,
+     * so the full resolution frame is never converted, rotated or flipped.
+     *
+     * @param image YUV_420_888 camera image
+     * @param rotation clockwise rotation which makes the camera image upright, one of 0, 90, 180, 270
+     * @param mirror whether the rotated image is flipped horizontally
+     * @return keypoints in pixel coordinates of the rotated and mirrored image, overwritten by the next inference
+     */
+    public Pose runInference(Image image, int rotation, boolean mirror) throws Exception {
+        YuvConverter.wrap(image, mYuvFrame).setOrientation(rotation, mirror);
+        return runInference(mYuvFrame);
+    }
+
+    /**
+     * Runs inference on a frame from any source, e.g. a recording, in the same way as on a camera image.
+     *
+     * @return keypoints in pixel coordinates of the oriented frame, overwritten by the next inference
+     */
+    public Pose runInference(YuvFrame frame) throws Exception {
+        preprocess(frame, mFrameSlot);
+        return infer(mFrameSlot);
     }
 
-    public double[] determineCropRegion(double[][] bodyKeypoint, int imageHeight, int imageWidth) {
-        double[] cropRegion = new double[6];
+    /**
+     * First half of runInference: samples the current crop region of the frame into the input of the slot.
+     * In a pipeline this runs while infer is busy with an earlier frame,
+     * so the crop region is the one determined from the frame before that.
+     */
+    public void preprocess(YuvFrame frame, FrameSlot slot) throws Exception {
+        slot.mImageHeight = frame.getOrientedHeight();
+        slot.mImageWidth = frame.getOrientedWidth();
+        slot.mTimestamp = frame.getTimestamp();
+        double[] cropRegion = slot.mCropRegion;
+        System.arraycopy(mCropRegion, 0, cropRegion, 0, cropRegion.length);
+
+        slot.mInput.rewind();
+        YuvConverter.cropResize(frame, (float)cropRegion[CropRegion.Y_MIN], (float)cropRegion[CropRegion.X_MIN],
+                (float)cropRegion[CropRegion.Y_MAX], (float)cropRegion[CropRegion.X_MAX],
+                slot.mInput, (int) mCropSize.width, (int) mCropSize.height, YuvConverter.CHANNEL_ORDER_RGB,
+                mInputSpec.getElementType(), mInputValueScale, mInputValueOffset);
+    }
+
+    /**
+     * Second half of runInference: runs the model on the input of the slot, maps the keypoints to the image,
+     * smooths them if a PoseSmoother is set and updates the crop region for the following frames.
+     * Must not be called concurrently.
+     *
+     * @return keypoints of the slot
+     */
+    public Pose infer(FrameSlot slot) {
+        estimate(slot);
+        return updatePose(slot);
+    }
 
-        if (!torsoVisible(bodyKeypoint)) {
-            return initCropRegion(imageHeight, imageWidth);
+    /**
+     * Runs the model on the input of the slot and maps the keypoints to the image, as the model outputs them.
+     * Must not be called concurrently with estimate or updatePose.
+     *
+     * @return keypoints of the slot
+     */
+    public Pose estimate(FrameSlot slot) {
+        float[] output = this.predict(slot.mInput);
+        Pose pose = slot.mPose;
+        CropRegion.mapKeypoints(output, slot.mCropRegion, slot.mImageHeight, slot.mImageWidth, pose);
+        pose.setTimestamp(slot.mTimestamp);
+        return pose;
+    }
+
+    /**
+     * Smooths the keypoints of the slot if a PoseSmoother is set, whether inferred or tracked,
+     * and determines the crop region of the following frames from them.
+     * Must not be called concurrently with estimate or updatePose.
+     *
+     * @return keypoints of the slot
+     */
+    public Pose updatePose(FrameSlot slot) {
+        Pose pose = slot.mPose;
+        if (mPoseSmoother != null) {
+            // a steady crop region follows from steady keypoints
+            mPoseSmoother.filter(pose, pose);
+        }
+        double[] cropRegion = nextCropRegion();
+        if (mCropPredictor != null) {
+            mCropPredictor.determine(pose, slot.mImageHeight, slot.mImageWidth, cropRegion);
         } else {
-            double centerY = (bodyKeypoint[KEYPOINT_DICT.get("left_hip")][0] + bodyKeypoint[KEYPOINT_DICT.get("right_hip")][0]) / 2;
-            double centerX = (bodyKeypoint[KEYPOINT_DICT.get("left_hip")][1] + bodyKeypoint[KEYPOINT_DICT.get("right_hip")][1]) / 2;
-
-            if (centerX < 0 || centerY < 0) {
-                return initCropRegion(imageHeight, imageWidth);
-            }
-
-            List<Double> bodyRange = determineBodyRange(bodyKeypoint, centerY, centerX);
-            bodyRange.set(0, bodyRange.get(0) * 1.2);
-            bodyRange.set(1, bodyRange.get(1) * 1.2);
-            //double cropLengthHalf = bodyRange[0] > bodyRange[1] ? bodyRange[0] * 1.2 : bodyRange[1] * 1.2;
-            double cropLengthHalfByKeypoint = Collections.max(bodyRange);
-            double cropLengthHalfByCenter = Collections.max((List<Double>) Arrays.asList(centerX, imageWidth - centerX, centerY, imageHeight - centerY));
-
-            double cropLengthHalf = Math.min(cropLengthHalfByKeypoint, cropLengthHalfByCenter);
-
-            //Log.i("PoseEstimator", "" + cropLengthHalf);
-
-            if (cropLengthHalf > Math.max(imageHeight, imageWidth) / 2.0) {
-                return initCropRegion(imageHeight, imageWidth);
-            } else {
-                cropRegion[CROP_REGION_Y_MIN] = (centerY - cropLengthHalf) / imageHeight;
-                cropRegion[CROP_REGION_X_MIN] = (centerX - cropLengthHalf) / imageWidth;
-                cropRegion[CROP_REGION_Y_MAX] = (centerY + cropLengthHalf) / imageHeight;
-                cropRegion[CROP_REGION_X_MAX] = (centerX + cropLengthHalf) / imageWidth;
-                cropRegion[CROP_REGION_HEIGHT] = (cropLengthHalf * 2) / imageHeight;
-                cropRegion[CROP_REGION_WIDTH] = (cropLengthHalf * 2) / imageWidth;
-
-                return cropRegion;
-            }
+            CropRegion.determine(pose, slot.mImageHeight, slot.mImageWidth, cropRegion);
         }
+        mCropRegion = cropRegion;
+        return pose;
     }
 
-
+    /**
+     * Returns the array of mCropRegions published longest ago, to determine the next crop region into.
+     */
+    private double[] nextCropRegion() {
+        double[] cropRegion = mCropRegions[mNextCropRegion];
+        mNextCropRegion = (mNextCropRegion + 1) % mCropRegions.length;
+        return cropRegion;
+    }
 }
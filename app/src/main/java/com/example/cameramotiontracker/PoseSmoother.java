@@ -0,0 +1,114 @@
+package com.example.cameramotiontracker;
+
+/**
+ * One-Euro filter over the x and y of every joint of consecutive poses.
+ * A joint which barely moves is low-pass filtered at minCutoff, which removes the jitter of the model;
+ * the faster it moves, the higher the cutoff, so that the filtered joint does not lag behind.
+ * Joints below MIN_KEYPOINT_SCORE are passed through and start over once confident again.
+ * See Casiez et al., "1 Euro Filter: A Simple Speed-based Low-pass Filter for Noisy Input in Interactive Systems".
+ */
+public class PoseSmoother {
+    public static final float DEFAULT_MIN_CUTOFF = 1.0f;
+    public static final float DEFAULT_BETA = 0.01f;
+    public static final float DEFAULT_DERIVATIVE_CUTOFF = 1.0f;
+    // poses further apart than this are not filtered against each other
+    public static final long DEFAULT_MAX_GAP_NANOS = 500000000L;
+
+    private final float mMinCutoff;
+    private final float mBeta;
+    private final float mDerivativeCutoff;
+    private final long mMaxGapNanos;
+
+    // filtered position and speed of every joint, laid out as in Pose
+    private final float[] mValues;
+    private final float[] mDerivatives;
+    private final boolean[] mTracked;
+    private long mLastTimestamp;
+
+    public PoseSmoother(int keypointCount) {
+        this(keypointCount, DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF, DEFAULT_MAX_GAP_NANOS);
+    }
+
+    /**
+     * @param minCutoff cutoff frequency in Hz of a joint at rest, lower is smoother
+     * @param beta increase of the cutoff frequency per pixel per second of joint speed, higher lags less
+     * @param derivativeCutoff cutoff frequency in Hz of the joint speed
+     * @param maxGapNanos poses further apart are not filtered against each other
+     */
+    public PoseSmoother(int keypointCount, float minCutoff, float beta, float derivativeCutoff, long maxGapNanos) {
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+        mMaxGapNanos = maxGapNanos;
+        mValues = new float[keypointCount * Pose.STRIDE];
+        mDerivatives = new float[keypointCount * Pose.STRIDE];
+        mTracked = new boolean[keypointCount];
+    }
+
+    /**
+     * Forgets every earlier pose, e.g. when the camera restarts.
+     */
+    public void reset() {
+        for (int i = 0; i < mTracked.length; i++) {
+            mTracked[i] = false;
+        }
+    }
+
+    /**
+     * Filters the pose against the poses before it. Input and output can be the same pose.
+     * Poses must come in timestamp order, a pose older than the last one or too far from it starts over.
+     */
+    public void filter(Pose input, Pose output) {
+        long timestamp = input.getTimestamp();
+        long elapsed = timestamp - mLastTimestamp;
+        if (elapsed <= 0 || elapsed > mMaxGapNanos) {
+            reset();
+        }
+        mLastTimestamp = timestamp;
+        float dt = elapsed / 1e9f;
+
+        float[] values = input.getValues();
+        float[] filtered = output.getValues();
+        float derivativeAlpha = alpha(mDerivativeCutoff, dt);
+        for (int i = 0; i < mTracked.length; i++) {
+            int index = i * Pose.STRIDE;
+            float score = values[index + Pose.SCORE];
+            filtered[index + Pose.SCORE] = score;
+            if (score < CropRegion.MIN_KEYPOINT_SCORE) {
+                mTracked[i] = false;
+                filtered[index + Pose.Y] = values[index + Pose.Y];
+                filtered[index + Pose.X] = values[index + Pose.X];
+                continue;
+            }
+            if (!mTracked[i]) {
+                mTracked[i] = true;
+                mValues[index + Pose.Y] = values[index + Pose.Y];
+                mValues[index + Pose.X] = values[index + Pose.X];
+                mDerivatives[index + Pose.Y] = 0.0f;
+                mDerivatives[index + Pose.X] = 0.0f;
+            } else {
+                filterValue(values, index + Pose.Y, dt, derivativeAlpha);
+                filterValue(values, index + Pose.X, dt, derivativeAlpha);
+            }
+            filtered[index + Pose.Y] = mValues[index + Pose.Y];
+            filtered[index + Pose.X] = mValues[index + Pose.X];
+        }
+        output.setTimestamp(timestamp);
+    }
+
+    private void filterValue(float[] values, int index, float dt, float derivativeAlpha) {
+        float value = values[index];
+        float derivative = (value - mValues[index]) / dt;
+        mDerivatives[index] += derivativeAlpha * (derivative - mDerivatives[index]);
+        float cutoff = mMinCutoff + mBeta * Math.abs(mDerivatives[index]);
+        mValues[index] += alpha(cutoff, dt) * (value - mValues[index]);
+    }
+
+    /**
+     * Returns the smoothing factor of an exponential low-pass filter with the given cutoff frequency.
+     */
+    private static float alpha(float cutoff, float dt) {
+        float r = (float) (2 * Math.PI * cutoff * dt);
+        return r / (r + 1);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Decides whether a person is likely in view, so the pose model only runs when there is someone to find.
+ * While nobody is present, every frame only runs the ForegroundDetector, a small fraction of a pose inference.
+ * The model wakes up once the foreground covered minForeground of the frame for wakeFrames frames in a row,
+ * and goes back to sleep once sleepFrames poses in a row had less than minKeypoints confident keypoints.
+ * A person standing still fades into the background model, so the model also probes one frame every
+ * probeIntervalNanos while asleep.
+ */
+public class PresenceDetector {
+    public static final float DEFAULT_MIN_FOREGROUND = 0.02f;
+    public static final int DEFAULT_WAKE_FRAMES = 3;
+    public static final int DEFAULT_MIN_KEYPOINTS = 5;
+    public static final int DEFAULT_SLEEP_FRAMES = 15;
+    public static final long DEFAULT_PROBE_INTERVAL_NANOS = 2000000000L;
+
+    private final float mMinForeground;
+    private final int mWakeFrames;
+    private final int mMinKeypoints;
+    private final int mSleepFrames;
+    private final long mProbeIntervalNanos;
+
+    // set to true by the camera thread and to false by the inference thread; a wake up racing with
+    // falling asleep at worst delays the model by wakeFrames frames
+    private volatile boolean mPresent = true;
+    // counted up by the camera thread on every wake up, so the inference thread starts counting absent poses over
+    private volatile int mWakeCount;
+    // only touched by the camera thread
+    private int mForegroundFrames;
+    private boolean mHasProbed;
+    private long mLastProbeTimestamp;
+    // only touched by the inference thread
+    private int mAbsentFrames;
+    private int mSeenWakeCount;
+
+    public PresenceDetector() {
+        this(DEFAULT_MIN_FOREGROUND, DEFAULT_WAKE_FRAMES, DEFAULT_MIN_KEYPOINTS, DEFAULT_SLEEP_FRAMES,
+                DEFAULT_PROBE_INTERVAL_NANOS);
+    }
+
+    /**
+     * @param minForeground share of the frame in the foreground from which a person is likely present
+     * @param wakeFrames frames in a row with enough foreground which wake the model up
+     * @param minKeypoints confident keypoints from which a pose shows a person
+     * @param sleepFrames poses in a row without a person which put the model to sleep
+     * @param probeIntervalNanos time between two frames running the model while asleep
+     */
+    public PresenceDetector(float minForeground, int wakeFrames, int minKeypoints, int sleepFrames,
+                            long probeIntervalNanos) {
+        mMinForeground = minForeground;
+        mWakeFrames = wakeFrames;
+        mMinKeypoints = minKeypoints;
+        mSleepFrames = sleepFrames;
+        mProbeIntervalNanos = probeIntervalNanos;
+    }
+
+    public boolean isPresent() {
+        return mPresent;
+    }
+
+    /**
+     * Returns whether the frame runs the pose model. Called for every frame, always from the same thread.
+     *
+     * @param foreground share of the frame in the foreground
+     * @param timestamp timestamp of the frame in nanoseconds
+     */
+    public boolean shouldEstimate(float foreground, long timestamp) {
+        mForegroundFrames = foreground >= mMinForeground ? mForegroundFrames + 1 : 0;
+        if (mPresent) {
+            return true;
+        }
+        if (mForegroundFrames >= mWakeFrames) {
+            mWakeCount++;
+            mPresent = true;
+            return true;
+        }
+        long sinceProbe = timestamp - mLastProbeTimestamp;
+        if (!mHasProbed || sinceProbe >= mProbeIntervalNanos || sinceProbe < 0) {
+            mHasProbed = true;
+            mLastProbeTimestamp = timestamp;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Updates the presence from the pose of a frame which ran the model or tracked its keypoints.
+     * Called in frame order, always from the same thread.
+     */
+    public void update(Pose pose) {
+        int wakeCount = mWakeCount;
+        if (wakeCount != mSeenWakeCount) {
+            mSeenWakeCount = wakeCount;
+            mAbsentFrames = 0;
+        }
+        int confident = 0;
+        for (int i = 0; i < pose.getKeypointCount(); i++) {
+            if (pose.getScore(i) >= CropRegion.MIN_KEYPOINT_SCORE) {
+                confident++;
+            }
+        }
+        if (confident >= mMinKeypoints) {
+            mAbsentFrames = 0;
+            mPresent = true;
+        } else if (++mAbsentFrames >= mSleepFrames && mPresent) {
+            mPresent = false;
+        }
+    }
+}
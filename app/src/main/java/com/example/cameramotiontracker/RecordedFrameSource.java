@@ -0,0 +1,255 @@
+package com.example.cameramotiontracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the frames of a FrameRecording file. The file is memory-mapped and the planes of every frame
+ * point straight into the mapping, so frames are neither copied nor read through the Java heap.
+ * Recordings larger than a single mapping are mapped window by window.
+ * Frames and keypoints can be looked up by index and timestamp, from the index of the recording
+ * or, for a recording which was cut short, from a scan of its records when opened.
+ */
+public class RecordedFrameSource implements FrameSource {
+    // large enough for minutes of 720p frames, small enough for the address space of 32 bit devices
+    static final int DEFAULT_MAP_SIZE = 256 * 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final long mSize;
+    private final int mMapSize;
+    private MappedByteBuffer mMap;
+    private long mMapStart;
+    private long mPosition;
+    private final RecordingIndex mFrames = new RecordingIndex();
+    private final RecordingIndex mKeypoints = new RecordingIndex();
+
+    public RecordedFrameSource(File file) throws IOException {
+        this(file, DEFAULT_MAP_SIZE);
+    }
+
+    RecordedFrameSource(File file, int mapSize) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        mChannel = mFile.getChannel();
+        mSize = mChannel.size();
+        mMapSize = mapSize;
+        try {
+            ByteBuffer header = map(0, FrameRecording.HEADER_SIZE);
+            int magic = header.getInt(0);
+            int version = header.getInt(4);
+            if (magic != FrameRecording.MAGIC) {
+                throw new IOException("Not a frame recording: " + file);
+            }
+            if (version != FrameRecording.VERSION) {
+                throw new IOException("Unsupported frame recording version " + version);
+            }
+            RecordingIndex records = readIndex();
+            if (records == null) {
+                records = scanRecords();
+            }
+            for (int i = 0; i < records.size(); i++) {
+                if (records.getType(i) == FrameRecording.RECORD_FRAME) {
+                    mFrames.add(records.getOffset(i), records.getTimestamp(i), FrameRecording.RECORD_FRAME);
+                } else if (records.getType(i) == FrameRecording.RECORD_KEYPOINTS) {
+                    mKeypoints.add(records.getOffset(i), records.getTimestamp(i), FrameRecording.RECORD_KEYPOINTS);
+                }
+            }
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+        mPosition = FrameRecording.HEADER_SIZE;
+    }
+
+    /**
+     * Returns the mapping from the given position of the file on, at least size bytes.
+     * Index 0 of the returned buffer is at mMapStart, which may be before the position.
+     */
+    private ByteBuffer map(long position, int size) throws IOException {
+        if (position + size > mSize) {
+            throw new IOException("Truncated frame recording at " + position);
+        }
+        if (mMap == null || position < mMapStart || position + size > mMapStart + mMap.capacity()) {
+            long length = Math.max(size, Math.min(mMapSize, mSize - position));
+            mMap = mChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            mMap.order(ByteOrder.LITTLE_ENDIAN);
+            mMapStart = position;
+        }
+        return mMap;
+    }
+
+    /**
+     * Returns the index record the trailer points at, null if the recording has no trailer.
+     */
+    private RecordingIndex readIndex() throws IOException {
+        long trailer = mSize - FrameRecording.TRAILER_SIZE;
+        if (trailer < FrameRecording.HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer map = map(trailer, FrameRecording.TRAILER_SIZE);
+        int index = (int) (trailer - mMapStart);
+        if (map.getInt(index) != FrameRecording.RECORD_TRAILER
+                || map.getInt(index + 4) != FrameRecording.TRAILER_SIZE - FrameRecording.RECORD_HEADER_SIZE) {
+            return null;
+        }
+        long indexOffset = map.getLong(index + 8);
+        if (indexOffset < FrameRecording.HEADER_SIZE || indexOffset > trailer - FrameRecording.RECORD_HEADER_SIZE) {
+            throw new IOException("Corrupt trailer");
+        }
+        map = map(indexOffset, FrameRecording.RECORD_HEADER_SIZE);
+        index = (int) (indexOffset - mMapStart);
+        int length = map.getInt(index + 4);
+        if (map.getInt(index) != FrameRecording.RECORD_INDEX || length < 4) {
+            throw new IOException("Corrupt index");
+        }
+        map = map(indexOffset, FrameRecording.RECORD_HEADER_SIZE + length);
+        RecordingIndex records = new RecordingIndex();
+        records.readPayload(map, (int) (indexOffset - mMapStart) + FrameRecording.RECORD_HEADER_SIZE);
+        return records;
+    }
+
+    /**
+     * Returns the frame and keypoints records found by walking all records, up to the last complete one.
+     */
+    private RecordingIndex scanRecords() throws IOException {
+        RecordingIndex records = new RecordingIndex();
+        long position = FrameRecording.HEADER_SIZE;
+        while (position + FrameRecording.RECORD_HEADER_SIZE + 8 <= mSize) {
+            ByteBuffer map = map(position, FrameRecording.RECORD_HEADER_SIZE);
+            int index = (int) (position - mMapStart);
+            int type = map.getInt(index);
+            int length = map.getInt(index + 4);
+            if (length < 0 || position + FrameRecording.RECORD_HEADER_SIZE + length > mSize) {
+                break;
+            }
+            if (type == FrameRecording.RECORD_FRAME || type == FrameRecording.RECORD_KEYPOINTS) {
+                map = map(position, FrameRecording.RECORD_HEADER_SIZE + 8);
+                records.add(position, map.getLong((int) (position - mMapStart) + FrameRecording.RECORD_HEADER_SIZE), type);
+            }
+            position += FrameRecording.RECORD_HEADER_SIZE + length;
+        }
+        return records;
+    }
+
+    public int getFrameCount() {
+        return mFrames.size();
+    }
+
+    public long getFrameTimestamp(int index) {
+        return mFrames.getTimestamp(index);
+    }
+
+    /**
+     * Returns the index of the first frame at or after the timestamp, getFrameCount() if there is none.
+     */
+    public int findFrame(long timestamp) {
+        return mFrames.search(timestamp);
+    }
+
+    /**
+     * Continues reading at the frame with the given index.
+     */
+    public void seek(int frameIndex) {
+        mPosition = frameIndex == mFrames.size() ? mSize : mFrames.getOffset(frameIndex);
+    }
+
+    public int getKeypointsCount() {
+        return mKeypoints.size();
+    }
+
+    public long getKeypointsTimestamp(int index) {
+        return mKeypoints.getTimestamp(index);
+    }
+
+    /**
+     * Returns the index of the first keypoints at or after the timestamp, getKeypointsCount() if there are none.
+     */
+    public int findKeypoints(long timestamp) {
+        return mKeypoints.search(timestamp);
+    }
+
+    /**
+     * Reads the keypoints with the given index and their timestamp into the pose.
+     *
+     * @throws IOException if the pose has another number of keypoints than recorded
+     */
+    public void readKeypoints(int index, Pose pose) throws IOException {
+        long offset = mKeypoints.getOffset(index);
+        ByteBuffer map = map(offset, FrameRecording.RECORD_HEADER_SIZE + FrameRecording.KEYPOINTS_HEADER_SIZE);
+        int start = (int) (offset - mMapStart) + FrameRecording.RECORD_HEADER_SIZE;
+        int count = map.getInt(start + 8);
+        if (count != pose.getKeypointCount()) {
+            throw new IOException("Recorded " + count + " keypoints, expected " + pose.getKeypointCount());
+        }
+        map = map(offset, FrameRecording.keypointsRecordSize(count));
+        start = (int) (offset - mMapStart) + FrameRecording.RECORD_HEADER_SIZE;
+        pose.setTimestamp(map.getLong(start));
+        start += FrameRecording.KEYPOINTS_HEADER_SIZE;
+        float[] values = pose.getValues();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = map.getFloat(start + i * 4);
+        }
+    }
+
+    @Override
+    public boolean read(YuvFrame frame) throws IOException {
+        while (mPosition + FrameRecording.RECORD_HEADER_SIZE <= mSize) {
+            ByteBuffer map = map(mPosition, FrameRecording.RECORD_HEADER_SIZE);
+            int index = (int) (mPosition - mMapStart);
+            int type = map.getInt(index);
+            int length = map.getInt(index + 4);
+            if (length < 0) {
+                throw new IOException("Corrupt record at " + mPosition);
+            }
+            if (mPosition + FrameRecording.RECORD_HEADER_SIZE + length > mSize) {
+                // the recording was cut short in the middle of this record
+                mPosition = mSize;
+                return false;
+            }
+            long recordStart = mPosition;
+            mPosition += FrameRecording.RECORD_HEADER_SIZE + length;
+            if (type != FrameRecording.RECORD_FRAME) {
+                continue;
+            }
+            map = map(recordStart, FrameRecording.RECORD_HEADER_SIZE + length);
+            readFrame(map, (int) (recordStart - mMapStart) + FrameRecording.RECORD_HEADER_SIZE, length, frame);
+            return true;
+        }
+        return false;
+    }
+
+    private static void readFrame(ByteBuffer map, int start, int length, YuvFrame frame) throws IOException {
+        frame.set(map.getInt(start + 8), map.getInt(start + 12), map.getLong(start));
+        frame.setOrientation(map.getInt(start + 16), (map.getInt(start + 20) & FrameRecording.FLAG_MIRROR) != 0);
+        int data = start + FrameRecording.FRAME_HEADER_SIZE;
+        for (int i = 0; i < YuvFrame.PLANE_COUNT; i++) {
+            int plane = start + 24 + i * FrameRecording.PLANE_HEADER_SIZE;
+            int offset = map.getInt(plane + 8);
+            int planeLength = map.getInt(plane + 12);
+            if (offset < 0 || planeLength < 0 || data + offset + planeLength > start + length) {
+                throw new IOException("Corrupt frame record");
+            }
+            ByteBuffer buffer = map.duplicate();
+            buffer.limit(data + offset + planeLength).position(data + offset);
+            frame.setPlane(i, buffer.slice(), map.getInt(plane), map.getInt(plane + 4));
+        }
+    }
+
+    /**
+     * Starts over at the first frame.
+     */
+    public void rewind() {
+        mPosition = FrameRecording.HEADER_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mMap = null;
+        mFile.close();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.cameramotiontracker;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Offsets, timestamps and types of the records of a FrameRecording, in the order they were written.
+ * Stored as the index record of a closed recording, see FrameRecording.
+ */
+final class RecordingIndex {
+    private long[] mOffsets = new long[64];
+    private long[] mTimestamps = new long[64];
+    private int[] mTypes = new int[64];
+    private int mSize;
+
+    void add(long offset, long timestamp, int type) {
+        if (mSize == mOffsets.length) {
+            mOffsets = Arrays.copyOf(mOffsets, mSize * 2);
+            mTimestamps = Arrays.copyOf(mTimestamps, mSize * 2);
+            mTypes = Arrays.copyOf(mTypes, mSize * 2);
+        }
+        mOffsets[mSize] = offset;
+        mTimestamps[mSize] = timestamp;
+        mTypes[mSize] = type;
+        mSize++;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    long getOffset(int index) {
+        return mOffsets[index];
+    }
+
+    long getTimestamp(int index) {
+        return mTimestamps[index];
+    }
+
+    int getType(int index) {
+        return mTypes[index];
+    }
+
+    /**
+     * Returns the first entry with a timestamp at or after the given one, size() if there is none.
+     * Entries must be in timestamp order.
+     */
+    int search(long timestamp) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mTimestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of bytes writeRecord takes, record header included.
+     */
+    int recordSize() {
+        return FrameRecording.RECORD_HEADER_SIZE + 4 + mSize * FrameRecording.INDEX_ENTRY_SIZE;
+    }
+
+    void writeRecord(ByteBuffer output) {
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt(FrameRecording.RECORD_INDEX);
+        output.putInt(recordSize() - FrameRecording.RECORD_HEADER_SIZE);
+        output.putInt(mSize);
+        for (int i = 0; i < mSize; i++) {
+            output.putLong(mOffsets[i]);
+            output.putLong(mTimestamps[i]);
+            output.putInt(mTypes[i]);
+        }
+    }
+
+    /**
+     * Adds the entries of the index record payload starting at the given index of the buffer.
+     */
+    void readPayload(ByteBuffer input, int start) {
+        int count = input.getInt(start);
+        for (int i = 0; i < count; i++) {
+            int entry = start + 4 + i * FrameRecording.INDEX_ENTRY_SIZE;
+            add(input.getLong(entry), input.getLong(entry + 8), input.getInt(entry + 16));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.cameramotiontracker;
+
+/**
+ * Builds the vertices of the skeleton overlay from a pose, in normalized device coordinates.
+ * The vertices are laid out as the border of the camera preview (BORDER_VERTEX_COUNT vertices, four lines),
+ * then the confident skeleton edges, both as pairs of vertices drawn as lines, then the confident joints (points).
+ * Lines wider than the GPU draws them can be turned into quads with toQuads.
+ * The vertex array is allocated once and rewritten by every build.
+ */
+public class SkeletonGeometry {
+    /**
+     * Pairs of joints connected by a skeleton edge.
+     */
+    static final int[] EDGES = {
+            Pose.NOSE, Pose.LEFT_EYE,
+            Pose.NOSE, Pose.RIGHT_EYE,
+            Pose.LEFT_EYE, Pose.LEFT_EAR,
+            Pose.RIGHT_EYE, Pose.RIGHT_EAR,
+            Pose.NOSE, Pose.LEFT_SHOULDER,
+            Pose.NOSE, Pose.RIGHT_SHOULDER,
+            Pose.LEFT_SHOULDER, Pose.LEFT_ELBOW,
+            Pose.LEFT_ELBOW, Pose.LEFT_WRIST,
+            Pose.RIGHT_SHOULDER, Pose.RIGHT_ELBOW,
+            Pose.RIGHT_ELBOW, Pose.RIGHT_WRIST,
+            Pose.LEFT_SHOULDER, Pose.RIGHT_SHOULDER,
+            Pose.LEFT_SHOULDER, Pose.LEFT_HIP,
+            Pose.RIGHT_SHOULDER, Pose.RIGHT_HIP,
+            Pose.LEFT_HIP, Pose.RIGHT_HIP,
+            Pose.LEFT_HIP, Pose.LEFT_KNEE,
+            Pose.LEFT_KNEE, Pose.LEFT_ANKLE,
+            Pose.RIGHT_HIP, Pose.RIGHT_KNEE,
+            Pose.RIGHT_KNEE, Pose.RIGHT_ANKLE
+    };
+    static final int BORDER_VERTEX_COUNT = 8;
+    // two triangles for every line
+    static final int QUAD_VERTEX_COUNT = 6;
+
+    private final float[] mVertices;
+    private final float mMinScore;
+    private int mLineVertexCount;
+    private int mPointCount;
+
+    public SkeletonGeometry(int keypointCount, float minScore) {
+        mVertices = new float[(BORDER_VERTEX_COUNT + EDGES.length + keypointCount) * 2];
+        mMinScore = minScore;
+    }
+
+    /**
+     * Rebuilds the vertices for the pose, in pixel coordinates of an image of the given size.
+     * The image is stretched over the width of the view and over contentHeightScale of its height, from the top,
+     * as the camera preview is.
+     */
+    public void build(Pose pose, int imageWidth, int imageHeight, float contentHeightScale) {
+        float bottom = toDeviceY(1.0f, contentHeightScale);
+        int offset = 0;
+        offset = put(offset, -1.0f, 1.0f);
+        offset = put(offset, 1.0f, 1.0f);
+        offset = put(offset, 1.0f, 1.0f);
+        offset = put(offset, 1.0f, bottom);
+        offset = put(offset, 1.0f, bottom);
+        offset = put(offset, -1.0f, bottom);
+        offset = put(offset, -1.0f, bottom);
+        offset = put(offset, -1.0f, 1.0f);
+
+        mLineVertexCount = 0;
+        mPointCount = 0;
+        if (imageWidth <= 0 || imageHeight <= 0) {
+            return;
+        }
+        int count = pose.getKeypointCount();
+        for (int i = 0; i < EDGES.length; i += 2) {
+            int from = EDGES[i];
+            int to = EDGES[i + 1];
+            if (from >= count || to >= count || !isConfident(pose, from) || !isConfident(pose, to)) {
+                continue;
+            }
+            offset = putJoint(offset, pose, from, imageWidth, imageHeight, contentHeightScale);
+            offset = putJoint(offset, pose, to, imageWidth, imageHeight, contentHeightScale);
+            mLineVertexCount += 2;
+        }
+        for (int i = 0; i < count; i++) {
+            if (isConfident(pose, i)) {
+                offset = putJoint(offset, pose, i, imageWidth, imageHeight, contentHeightScale);
+                mPointCount++;
+            }
+        }
+    }
+
+    /**
+     * Writes the lines of count vertices from the given first vertex as quads of the given width in pixels,
+     * two triangles each, with square caps so that lines meeting at a corner close it.
+     * For GPUs whose GL_ALIASED_LINE_WIDTH_RANGE does not reach the width.
+     *
+     * @param out vertices as x, y pairs, written from vertex outOffset
+     * @return number of vertices written, QUAD_VERTEX_COUNT for every line
+     */
+    public int toQuads(int first, int count, float width, int viewWidth, int viewHeight, float[] out, int outOffset) {
+        // half a pixel in normalized device coordinates
+        float pixelX = 1.0f / viewWidth;
+        float pixelY = 1.0f / viewHeight;
+        int o = outOffset * 2;
+        for (int i = first * 2; i < (first + count) * 2; i += 4) {
+            float x0 = mVertices[i];
+            float y0 = mVertices[i + 1];
+            float x1 = mVertices[i + 2];
+            float y1 = mVertices[i + 3];
+            // direction in pixels, scaled to half the width
+            float dx = (x1 - x0) / pixelX;
+            float dy = (y1 - y0) / pixelY;
+            float length = (float) Math.sqrt(dx * dx + dy * dy);
+            if (length > 0) {
+                dx *= width / length;
+                dy *= width / length;
+            }
+            // along and across the line, back in normalized device coordinates
+            float alongX = dx * pixelX;
+            float alongY = dy * pixelY;
+            float acrossX = -dy * pixelX;
+            float acrossY = dx * pixelY;
+            float ax = x0 - alongX + acrossX;
+            float ay = y0 - alongY + acrossY;
+            float bx = x0 - alongX - acrossX;
+            float by = y0 - alongY - acrossY;
+            float cx = x1 + alongX + acrossX;
+            float cy = y1 + alongY + acrossY;
+            float ex = x1 + alongX - acrossX;
+            float ey = y1 + alongY - acrossY;
+            o = put(out, o, ax, ay);
+            o = put(out, o, bx, by);
+            o = put(out, o, cx, cy);
+            o = put(out, o, cx, cy);
+            o = put(out, o, bx, by);
+            o = put(out, o, ex, ey);
+        }
+        return count / 2 * QUAD_VERTEX_COUNT;
+    }
+
+    private static int put(float[] out, int offset, float x, float y) {
+        out[offset] = x;
+        out[offset + 1] = y;
+        return offset + 2;
+    }
+
+    private boolean isConfident(Pose pose, int joint) {
+        return pose.getScore(joint) >= mMinScore;
+    }
+
+    private int putJoint(int offset, Pose pose, int joint, int imageWidth, int imageHeight, float contentHeightScale) {
+        return put(offset, pose.getX(joint) / imageWidth * 2.0f - 1.0f,
+                toDeviceY(pose.getY(joint) / imageHeight, contentHeightScale));
+    }
+
+    private static float toDeviceY(float y, float contentHeightScale) {
+        return 1.0f - y * contentHeightScale * 2.0f;
+    }
+
+    private int put(int offset, float x, float y) {
+        mVertices[offset] = x;
+        mVertices[offset + 1] = y;
+        return offset + 2;
+    }
+
+    /**
+     * Returns the vertices as x, y pairs. Only the first getVertexCount vertices are valid.
+     */
+    public float[] getVertices() {
+        return mVertices;
+    }
+
+    public int getVertexCount() {
+        return BORDER_VERTEX_COUNT + mLineVertexCount + mPointCount;
+    }
+
+    public int getLineOffset() {
+        return BORDER_VERTEX_COUNT;
+    }
+
+    public int getLineVertexCount() {
+        return mLineVertexCount;
+    }
+
+    public int getPointOffset() {
+        return BORDER_VERTEX_COUNT + mLineVertexCount;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+}
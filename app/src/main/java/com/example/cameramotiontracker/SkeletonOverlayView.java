@@ -0,0 +1,56 @@
+package com.example.cameramotiontracker;
+
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.opengl.GLSurfaceView;
+import android.util.AttributeSet;
+
+/**
+ * Draws the skeleton of the latest pose over the camera preview with OpenGL ES, on a transparent surface
+ * stacked over the TextureView. The render thread only publishes the pose into a LatestPoseSlot and requests
+ * a render; the GL thread of the view draws it, so neither the UI thread nor any per-frame allocation is involved,
+ * and the drawing cost does not depend on the resolution of the view.
+ */
+public class SkeletonOverlayView extends GLSurfaceView {
+    private final LatestPoseSlot mSlot = new LatestPoseSlot(Pose.JOINT_COUNT);
+    private final SkeletonRenderer mRenderer = new SkeletonRenderer(mSlot, Pose.JOINT_COUNT);
+
+    public SkeletonOverlayView(Context context) {
+        this(context, null);
+    }
+
+    public SkeletonOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        setEGLContextClientVersion(2);
+        setEGLConfigChooser(8, 8, 8, 8, 0, 0);
+        getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        setZOrderMediaOverlay(true);
+        setRenderer(mRenderer);
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+    }
+
+    /**
+     * Sets the share of the view height the camera preview covers. Called on the UI thread.
+     */
+    public void setContentHeightScale(float scale) {
+        mRenderer.setContentHeightScale(scale);
+        requestRender();
+    }
+
+    /**
+     * Publishes the pose to be drawn next, in pixel coordinates of an image of the given size.
+     * Only called from one thread at a time, the pose can be reused right after.
+     */
+    public void setPose(Pose pose, int imageWidth, int imageHeight) {
+        mSlot.publish(pose, imageWidth, imageHeight);
+        requestRender();
+    }
+
+    /**
+     * Removes the skeleton from the view. Called once the thread calling setPose stopped.
+     */
+    public void clearPose() {
+        mSlot.clear();
+        requestRender();
+    }
+}
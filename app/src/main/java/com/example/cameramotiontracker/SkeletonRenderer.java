@@ -0,0 +1,183 @@
+package com.example.cameramotiontracker;
+
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * Draws the latest pose of a LatestPoseSlot as GL lines and points on a transparent surface,
+ * composited over the camera preview by the system compositor. Runs on the GL thread of the SkeletonOverlayView;
+ * shader setup follows CameraGLRendererBase of the OpenCV library.
+ * GLES 2.0 only guarantees lines 1 pixel wide, so where GL_ALIASED_LINE_WIDTH_RANGE does not reach the widths
+ * below, the lines are drawn as quads instead.
+ */
+class SkeletonRenderer implements GLSurfaceView.Renderer {
+    private static final String TAG = "SkeletonRenderer";
+    private static final float POINT_SIZE = 40.0f;
+    private static final float LINE_WIDTH = 10.0f;
+    private static final float BORDER_WIDTH = 20.0f;
+    // rgb(255, 127, 200)
+    private static final float[] COLOR = {1.0f, 127.0f / 255.0f, 200.0f / 255.0f, 1.0f};
+
+    private static final String VERTEX_SHADER = ""
+            + "attribute vec2 vPosition;\n"
+            + "uniform float uPointSize;\n"
+            + "void main() {\n"
+            + "  gl_PointSize = uPointSize;\n"
+            + "  gl_Position = vec4(vPosition.x, vPosition.y, 0.0, 1.0);\n"
+            + "}";
+
+    // round points: fragments outside the circle of the point sprite are discarded
+    private static final String FRAGMENT_SHADER = ""
+            + "precision mediump float;\n"
+            + "uniform vec4 uColor;\n"
+            + "uniform float uRoundPoints;\n"
+            + "void main() {\n"
+            + "  if (uRoundPoints > 0.5 && length(gl_PointCoord - vec2(0.5)) > 0.5) discard;\n"
+            + "  gl_FragColor = uColor;\n"
+            + "}";
+
+    private final LatestPoseSlot mSlot;
+    private final SkeletonGeometry mGeometry;
+    private final FloatBuffer mVertexBuffer;
+    // lines as quads, for GPUs which cannot draw them wide enough
+    private final float[] mQuadVertices;
+    private final FloatBuffer mQuadBuffer;
+    private boolean mWideLines;
+    private int mViewWidth;
+    private int mViewHeight;
+    private volatile float mContentHeightScale = 1.0f;
+
+    private int mProgram;
+    private int mPositionLocation;
+    private int mPointSizeLocation;
+    private int mColorLocation;
+    private int mRoundPointsLocation;
+
+    SkeletonRenderer(LatestPoseSlot slot, int keypointCount) {
+        mSlot = slot;
+        mGeometry = new SkeletonGeometry(keypointCount, (float) CropRegion.MIN_KEYPOINT_SCORE);
+        mVertexBuffer = ByteBuffer.allocateDirect(mGeometry.getVertices().length * Float.SIZE / Byte.SIZE)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        int lineCount = (SkeletonGeometry.BORDER_VERTEX_COUNT + SkeletonGeometry.EDGES.length) / 2;
+        mQuadVertices = new float[lineCount * SkeletonGeometry.QUAD_VERTEX_COUNT * 2];
+        mQuadBuffer = ByteBuffer.allocateDirect(mQuadVertices.length * Float.SIZE / Byte.SIZE)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    void setContentHeightScale(float scale) {
+        mContentHeightScale = scale;
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        mProgram = loadProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        mPositionLocation = GLES20.glGetAttribLocation(mProgram, "vPosition");
+        mPointSizeLocation = GLES20.glGetUniformLocation(mProgram, "uPointSize");
+        mColorLocation = GLES20.glGetUniformLocation(mProgram, "uColor");
+        mRoundPointsLocation = GLES20.glGetUniformLocation(mProgram, "uRoundPoints");
+        float[] lineWidthRange = new float[2];
+        GLES20.glGetFloatv(GLES20.GL_ALIASED_LINE_WIDTH_RANGE, lineWidthRange, 0);
+        mWideLines = lineWidthRange[1] >= Math.max(LINE_WIDTH, BORDER_WIDTH);
+        Log.i(TAG, "Line widths up to " + lineWidthRange[1] + (mWideLines ? "" : ", drawing lines as quads"));
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 gl, int width, int height) {
+        GLES20.glViewport(0, 0, width, height);
+        mViewWidth = width;
+        mViewHeight = height;
+    }
+
+    @Override
+    public void onDrawFrame(GL10 gl) {
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        mSlot.acquire();
+        if (mProgram == 0 || mSlot.getImageWidth() == 0) {
+            return;
+        }
+
+        mGeometry.build(mSlot.getPose(), mSlot.getImageWidth(), mSlot.getImageHeight(), mContentHeightScale);
+        mVertexBuffer.clear();
+        mVertexBuffer.put(mGeometry.getVertices(), 0, mGeometry.getVertexCount() * 2);
+        mVertexBuffer.position(0);
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glVertexAttribPointer(mPositionLocation, 2, GLES20.GL_FLOAT, false, 0, mVertexBuffer);
+        GLES20.glEnableVertexAttribArray(mPositionLocation);
+        GLES20.glUniform4fv(mColorLocation, 1, COLOR, 0);
+        GLES20.glUniform1f(mPointSizeLocation, POINT_SIZE);
+
+        GLES20.glUniform1f(mRoundPointsLocation, 0.0f);
+        if (mWideLines) {
+            GLES20.glLineWidth(BORDER_WIDTH);
+            GLES20.glDrawArrays(GLES20.GL_LINES, 0, SkeletonGeometry.BORDER_VERTEX_COUNT);
+            GLES20.glLineWidth(LINE_WIDTH);
+            GLES20.glDrawArrays(GLES20.GL_LINES, mGeometry.getLineOffset(), mGeometry.getLineVertexCount());
+        } else {
+            drawLinesAsQuads();
+            GLES20.glVertexAttribPointer(mPositionLocation, 2, GLES20.GL_FLOAT, false, 0, mVertexBuffer);
+        }
+        GLES20.glUniform1f(mRoundPointsLocation, 1.0f);
+        GLES20.glDrawArrays(GLES20.GL_POINTS, mGeometry.getPointOffset(), mGeometry.getPointCount());
+        GLES20.glDisableVertexAttribArray(mPositionLocation);
+    }
+
+    private void drawLinesAsQuads() {
+        int count = mGeometry.toQuads(0, SkeletonGeometry.BORDER_VERTEX_COUNT, BORDER_WIDTH,
+                mViewWidth, mViewHeight, mQuadVertices, 0);
+        count += mGeometry.toQuads(mGeometry.getLineOffset(), mGeometry.getLineVertexCount(), LINE_WIDTH,
+                mViewWidth, mViewHeight, mQuadVertices, count);
+        mQuadBuffer.clear();
+        mQuadBuffer.put(mQuadVertices, 0, count * 2);
+        mQuadBuffer.position(0);
+        GLES20.glVertexAttribPointer(mPositionLocation, 2, GLES20.GL_FLOAT, false, 0, mQuadBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, count);
+    }
+
+    private static int loadShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Could not compile shader: " + GLES20.glGetShaderInfoLog(shader));
+            GLES20.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    private static int loadProgram(String vertexSource, String fragmentSource) {
+        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        if (vertexShader == 0 || fragmentShader == 0) {
+            GLES20.glDeleteShader(vertexShader);
+            GLES20.glDeleteShader(fragmentShader);
+            return 0;
+        }
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Could not link shader program: " + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+}
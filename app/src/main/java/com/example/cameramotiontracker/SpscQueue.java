@@ -0,0 +1,74 @@
+package com.example.cameramotiontracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free ring buffer between exactly one producer thread and one consumer thread.
+ * Neither side ever blocks the other: offer fails when the ring is full, and a consumer waiting in take
+ * is parked until the producer's next offer wakes it up.
+ */
+public class SpscQueue<T> extends ParkingChannel<T> {
+
+    private final Object[] mBuffer;
+    private final int mMask;
+    // index of the next item to read, only written by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+    // index of the next item to write, only written by the producer
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of items in the queue, rounded up to a power of two
+     */
+    public SpscQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mBuffer = new Object[size];
+        mMask = size - 1;
+    }
+
+    public int capacity() {
+        return mBuffer.length;
+    }
+
+    @Override
+    public T offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        long tail = mTail.get();
+        if (tail - mHead.get() == mBuffer.length) {
+            return item;
+        }
+        mBuffer[(int) tail & mMask] = item;
+        // a full volatile store rather than lazySet, see signalConsumer
+        mTail.set(tail + 1);
+        signalConsumer();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long head = mHead.get();
+        if (head == mTail.get()) {
+            return null;
+        }
+        int index = (int) head & mMask;
+        T item = (T) mBuffer[index];
+        mBuffer[index] = null;
+        mHead.lazySet(head + 1);
+        return item;
+    }
+
+    /**
+     * Returns the number of items in the queue, only exact when called from the producer or the consumer.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.cameramotiontracker;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Shape, element type and quantization of one model tensor, as declared by the loaded model.
+ * PoseEstimator binds its input and output buffers from these, so models with another input size
+ * or with uint8, int8 or float32 tensors can be swapped in without code changes.
+ */
+public class TensorSpec {
+    // element types, also understood by YuvConverter.cropResize
+    public static final int ELEMENT_TYPE_UINT8 = 0;
+    public static final int ELEMENT_TYPE_INT8 = 1;
+    public static final int ELEMENT_TYPE_FLOAT32 = 2;
+
+    private final int[] mShape;
+    private final int mElementType;
+    private final float mScale;
+    private final int mZeroPoint;
+
+    /**
+     * @param shape dimensions of the tensor
+     * @param elementType one of ELEMENT_TYPE_*
+     * @param scale quantization scale, 0 if the tensor is not quantized
+     * @param zeroPoint quantization zero point
+     */
+    public TensorSpec(int[] shape, int elementType, float scale, int zeroPoint) {
+        if (elementType != ELEMENT_TYPE_UINT8 && elementType != ELEMENT_TYPE_INT8 && elementType != ELEMENT_TYPE_FLOAT32) {
+            throw new IllegalArgumentException("Invalid element type " + elementType);
+        }
+        mShape = shape.clone();
+        mElementType = elementType;
+        mScale = scale;
+        mZeroPoint = zeroPoint;
+    }
+
+    public int[] getShape() {
+        return mShape.clone();
+    }
+
+    /**
+     * Returns the size of a dimension, counted from the end for negative index.
+     */
+    public int getDimension(int index) {
+        return mShape[index < 0 ? mShape.length + index : index];
+    }
+
+    public int getElementType() {
+        return mElementType;
+    }
+
+    public boolean isQuantized() {
+        return mScale != 0;
+    }
+
+    public int getElementCount() {
+        int count = 1;
+        for (int dimension : mShape) {
+            count *= dimension;
+        }
+        return count;
+    }
+
+    public int getByteSize() {
+        return getElementCount() * (mElementType == ELEMENT_TYPE_FLOAT32 ? 4 : 1);
+    }
+
+    /**
+     * Returns the factor of the affine mapping from an 8 bit pixel value to the element stored in this tensor,
+     * for a model which takes (pixel - mean) / std, quantized if the tensor is.
+     */
+    public float getInputValueScale(float mean, float std) {
+        return 1.0f / (std * realScale());
+    }
+
+    /**
+     * Returns the offset of the affine mapping described in getInputValueScale.
+     */
+    public float getInputValueOffset(float mean, float std) {
+        return realZeroPoint() - mean / (std * realScale());
+    }
+
+    /**
+     * Reads every element of the tensor data as real value, dequantized if the tensor is quantized.
+     *
+     * @param data tensor data in native byte order, starting at index 0
+     * @param values array of at least getElementCount() values
+     */
+    public void readValues(ByteBuffer data, float[] values) {
+        int count = getElementCount();
+        float scale = realScale();
+        int zeroPoint = realZeroPoint();
+        switch (mElementType) {
+            case ELEMENT_TYPE_FLOAT32:
+                for (int i = 0; i < count; i++) {
+                    values[i] = data.getFloat(i * 4);
+                }
+                break;
+            case ELEMENT_TYPE_INT8:
+                for (int i = 0; i < count; i++) {
+                    values[i] = (data.get(i) - zeroPoint) * scale;
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) {
+                    values[i] = ((data.get(i) & 0xff) - zeroPoint) * scale;
+                }
+                break;
+        }
+    }
+
+    private float realScale() {
+        return isQuantized() ? mScale : 1.0f;
+    }
+
+    private int realZeroPoint() {
+        return isQuantized() ? mZeroPoint : 0;
+    }
+
+    @Override
+    public String toString() {
+        String[] typeNames = {"uint8", "int8", "float32"};
+        return typeNames[mElementType] + Arrays.toString(mShape)
+                + (isQuantized() ? " scale " + mScale + " zero point " + mZeroPoint : "");
+    }
+}
@@ -3,23 +3,58 @@ package com.example.cameramotiontracker;
 import android.graphics.ImageFormat;
 import android.media.Image;
 
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
 import java.nio.ByteBuffer;
 
 public class YuvConverter {
+    // channel order of the 3 channel Mat written by toMat
+    public static final int CHANNEL_ORDER_RGB = YuvNative.CHANNEL_ORDER_RGB;
+    public static final int CHANNEL_ORDER_BGR = YuvNative.CHANNEL_ORDER_BGR;
+
     private YuvConverter() {}
 
-    static {
-        // define this in CMakeLists.txt file.
-        System.loadLibrary("yuv2rgb-lib");
+    /**
+     * Sets the number of threads each conversion is split over, including the calling thread.
+     * The image is divided into horizontal stripes processed by native worker threads,
+     * which are created here once and reused by every following conversion.
+     *
+     * @param threadCount number of threads, 1 converts on the calling thread only
+     */
+    public static void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Invalid thread count " + threadCount);
+        }
+        YuvNative.setThreadCountNative(threadCount);
+    }
+
+    public static int getThreadCount() {
+        return YuvNative.getThreadCountNative();
     }
 
     public static int[] toARGB(Image image) throws Exception {
+        int[] argbOutput = new int[image.getWidth() * image.getHeight()];
+        toARGB(image, argbOutput);
+        return argbOutput;
+    }
+
+    /**
+     * Converts YUV_420_888 Image into ARGB pixels written to the given array,
+     * so that the caller can reuse the same array for every frame.
+     *
+     * @param image YUV_420_888 Image
+     * @param argbOutput array of at least width * height pixels
+     */
+    public static void toARGB(Image image, int[] argbOutput) throws Exception {
         if (image.getFormat() != ImageFormat.YUV_420_888) {
             throw new IllegalArgumentException("Invalid image format");
         }
+        if (argbOutput.length < image.getWidth() * image.getHeight()) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
 
-        int[] argbOutput = new int[image.getWidth() * image.getHeight()];
-        if (!yuv420toArgbNative(
+        if (!YuvNative.yuv420toArgbNative(
                 image.getWidth(),
                 image.getHeight(),
                 image.getPlanes()[0].getBuffer(),       // Y buffer
@@ -33,18 +68,168 @@ public class YuvConverter {
             // Handle this based on your usecase.
             throw new Exception("Failed to convert YUV to Bitmap");
         }
-        return argbOutput;
     }
 
-    private static native boolean yuv420toArgbNative(
-            int width,
-            int height,
-            ByteBuffer yByteBuffer,
-            ByteBuffer uByteBuffer,
-            ByteBuffer vByteBuffer,
-            int yPixelStride,
-            int uvPixelStride,
-            int yRowStride,
-            int uvRowStride,
-            int[] argbOutput);
+    /**
+     * Converts YUV_420_888 Image straight into 8 bit 3 channel Mat in one native pass.
+     * The output Mat is (re)allocated only if its size or type does not match the image,
+     * so the same Mat can be passed in every frame.
+     *
+     * @param image YUV_420_888 Image
+     * @param output Mat to write into
+     * @param channelOrder CHANNEL_ORDER_RGB or CHANNEL_ORDER_BGR
+     */
+    public static void toMat(Image image, Mat output, int channelOrder) throws Exception {
+        if (image.getFormat() != ImageFormat.YUV_420_888) {
+            throw new IllegalArgumentException("Invalid image format");
+        }
+        if (channelOrder != CHANNEL_ORDER_RGB && channelOrder != CHANNEL_ORDER_BGR) {
+            throw new IllegalArgumentException("Invalid channel order " + channelOrder);
+        }
+
+        // create() is a no-op when the Mat already has the requested size and type
+        output.create(image.getHeight(), image.getWidth(), CvType.CV_8UC3);
+        if (!YuvNative.yuv420toMatNative(
+                image.getWidth(),
+                image.getHeight(),
+                image.getPlanes()[0].getBuffer(),       // Y buffer
+                image.getPlanes()[1].getBuffer(),       // U buffer
+                image.getPlanes()[2].getBuffer(),       // V buffer
+                image.getPlanes()[0].getPixelStride(),  // Y pixel stride
+                image.getPlanes()[1].getPixelStride(),  // U/V pixel stride
+                image.getPlanes()[0].getRowStride(),    // Y row stride
+                image.getPlanes()[1].getRowStride(),    // U/V row stride
+                output.dataAddr(),                      // Mat data
+                (int) output.step1(0),                  // Mat row stride in bytes
+                channelOrder)) {
+            throw new Exception("Failed to convert YUV to Mat");
+        }
+    }
+
+    /**
+     * Crops, rotates, mirrors and resizes YUV_420_888 Image into packed 8 bit 3 channel buffer
+     * in a single native pass. Only the pixels needed to fill the output are sampled.
+     * Crop region is normalized to the oriented image, i.e. after rotation and mirroring,
+     * and parts outside of the image are zero padded.
+     *
+     * @param image YUV_420_888 Image
+     * @param cropYMin top of the crop region
+     * @param cropXMin left of the crop region
+     * @param cropYMax bottom of the crop region
+     * @param cropXMax right of the crop region
+     * @param rotation clockwise rotation applied to the image, one of 0, 90, 180, 270
+     * @param mirror whether the rotated image is flipped horizontally
+     * @param output direct ByteBuffer of at least outputWidth * outputHeight * 3 bytes
+     * @param outputWidth width of the output in pixels
+     * @param outputHeight height of the output in pixels
+     * @param channelOrder CHANNEL_ORDER_RGB or CHANNEL_ORDER_BGR
+     */
+    public static void cropResize(Image image, float cropYMin, float cropXMin, float cropYMax, float cropXMax,
+                                  int rotation, boolean mirror, ByteBuffer output,
+                                  int outputWidth, int outputHeight, int channelOrder) throws Exception {
+        cropResize(image, cropYMin, cropXMin, cropYMax, cropXMax, rotation, mirror, output,
+                outputWidth, outputHeight, channelOrder, TensorSpec.ELEMENT_TYPE_UINT8, 1.0f, 0.0f);
+    }
+
+    /**
+     * Same as the uint8 version, but writes elements of the given type, each 8 bit channel value p
+     * stored as p * valueScale + valueOffset, so that the output can be the normalized or quantized
+     * input tensor of the model.
+     *
+     * @param output direct ByteBuffer in native order, large enough for outputWidth * outputHeight * 3 elements
+     * @param elementType one of TensorSpec.ELEMENT_TYPE_*
+     * @param valueScale factor applied to every channel value
+     * @param valueOffset offset added to every scaled channel value, integer types are rounded and saturated afterwards
+     */
+    public static void cropResize(Image image, float cropYMin, float cropXMin, float cropYMax, float cropXMax,
+                                  int rotation, boolean mirror, ByteBuffer output,
+                                  int outputWidth, int outputHeight, int channelOrder, int elementType,
+                                  float valueScale, float valueOffset) throws Exception {
+        if (image.getFormat() != ImageFormat.YUV_420_888) {
+            throw new IllegalArgumentException("Invalid image format");
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Invalid rotation " + rotation);
+        }
+        if (!output.isDirect()) {
+            throw new IllegalArgumentException("Output buffer must be a direct ByteBuffer");
+        }
+        if (!YuvNative.yuv420CropResizeNative(
+                image.getWidth(),
+                image.getHeight(),
+                image.getPlanes()[0].getBuffer(),       // Y buffer
+                image.getPlanes()[1].getBuffer(),       // U buffer
+                image.getPlanes()[2].getBuffer(),       // V buffer
+                image.getPlanes()[0].getPixelStride(),  // Y pixel stride
+                image.getPlanes()[1].getPixelStride(),  // U/V pixel stride
+                image.getPlanes()[0].getRowStride(),    // Y row stride
+                image.getPlanes()[1].getRowStride(),    // U/V row stride
+                cropYMin, cropXMin, cropYMax, cropXMax,
+                rotation,
+                mirror,
+                output,
+                outputWidth,
+                outputHeight,
+                channelOrder,
+                elementType,
+                valueScale,
+                valueOffset)) {
+            throw new Exception("Failed to crop and resize YUV image");
+        }
+    }
+
+    /**
+     * Points the frame at the planes of the Image without copying them, so that the frame is only valid
+     * until the Image is closed. The orientation of the frame is left as it is.
+     *
+     * @return the frame
+     */
+    public static YuvFrame wrap(Image image, YuvFrame frame) {
+        if (image.getFormat() != ImageFormat.YUV_420_888) {
+            throw new IllegalArgumentException("Invalid image format");
+        }
+        frame.set(image.getWidth(), image.getHeight(), image.getTimestamp());
+        Image.Plane[] planes = image.getPlanes();
+        for (int i = 0; i < YuvFrame.PLANE_COUNT; i++) {
+            frame.setPlane(i, planes[i].getBuffer(), planes[i].getPixelStride(), planes[i].getRowStride());
+        }
+        return frame;
+    }
+
+    /**
+     * Same as the Image version for any YUV_420_888 frame, rotated and mirrored as set on the frame.
+     */
+    public static void cropResize(YuvFrame frame, float cropYMin, float cropXMin, float cropYMax, float cropXMax,
+                                  ByteBuffer output, int outputWidth, int outputHeight, int channelOrder,
+                                  int elementType, float valueScale, float valueOffset) throws Exception {
+        int rotation = frame.getRotation();
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Invalid rotation " + rotation);
+        }
+        if (!output.isDirect()) {
+            throw new IllegalArgumentException("Output buffer must be a direct ByteBuffer");
+        }
+        if (!YuvNative.yuv420CropResizeNative(
+                frame.getWidth(),
+                frame.getHeight(),
+                frame.getPlane(0),                      // Y buffer
+                frame.getPlane(1),                      // U buffer
+                frame.getPlane(2),                      // V buffer
+                frame.getPixelStride(0),                // Y pixel stride
+                frame.getPixelStride(1),                // U/V pixel stride
+                frame.getRowStride(0),                  // Y row stride
+                frame.getRowStride(1),                  // U/V row stride
+                cropYMin, cropXMin, cropYMax, cropXMax,
+                rotation,
+                frame.isMirror(),
+                output,
+                outputWidth,
+                outputHeight,
+                channelOrder,
+                elementType,
+                valueScale,
+                valueOffset)) {
+            throw new Exception("Failed to crop and resize YUV frame");
+        }
+    }
 }
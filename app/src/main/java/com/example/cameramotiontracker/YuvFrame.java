@@ -0,0 +1,128 @@
+package com.example.cameramotiontracker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888 frame as the native conversions take it: three planes with their strides,
+ * the timestamp and how the frame is oriented before processing.
+ * Unlike android.media.Image it can be backed by any direct buffers, e.g. a recording,
+ * and the same instance is reused for every frame of a source.
+ */
+public class YuvFrame {
+    public static final int PLANE_COUNT = 3;
+
+    private int mWidth;
+    private int mHeight;
+    private long mTimestamp;
+    private int mRotation;
+    private boolean mMirror;
+    private final ByteBuffer[] mPlanes = new ByteBuffer[PLANE_COUNT];
+    private final int[] mPixelStrides = new int[PLANE_COUNT];
+    private final int[] mRowStrides = new int[PLANE_COUNT];
+
+    /**
+     * @param timestamp timestamp in nanoseconds
+     */
+    public void set(int width, int height, long timestamp) {
+        mWidth = width;
+        mHeight = height;
+        mTimestamp = timestamp;
+    }
+
+    /**
+     * @param index 0 for Y, 1 for U, 2 for V
+     * @param buffer direct buffer starting at the first pixel of the plane
+     */
+    public void setPlane(int index, ByteBuffer buffer, int pixelStride, int rowStride) {
+        mPlanes[index] = buffer;
+        mPixelStrides[index] = pixelStride;
+        mRowStrides[index] = rowStride;
+    }
+
+    /**
+     * @param rotation clockwise rotation which makes the frame upright, one of 0, 90, 180, 270
+     * @param mirror whether the rotated frame is flipped horizontally
+     */
+    public void setOrientation(int rotation, boolean mirror) {
+        mRotation = rotation;
+        mMirror = mirror;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Returns the timestamp in nanoseconds.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public int getRotation() {
+        return mRotation;
+    }
+
+    public boolean isMirror() {
+        return mMirror;
+    }
+
+    public ByteBuffer getPlane(int index) {
+        return mPlanes[index];
+    }
+
+    public int getPixelStride(int index) {
+        return mPixelStrides[index];
+    }
+
+    public int getRowStride(int index) {
+        return mRowStrides[index];
+    }
+
+    /**
+     * Returns the height of the frame once rotated.
+     */
+    public int getOrientedHeight() {
+        return mRotation == 90 || mRotation == 270 ? mWidth : mHeight;
+    }
+
+    /**
+     * Returns the width of the frame once rotated.
+     */
+    public int getOrientedWidth() {
+        return mRotation == 90 || mRotation == 270 ? mHeight : mWidth;
+    }
+
+    /**
+     * Puts every downscale-th pixel of every downscale-th row of the plane into the output, tightly packed,
+     * width pixels of height rows. Samples past the edge of the plane repeat its last row or column.
+     * Rows of contiguous pixels are copied in bulk.
+     */
+    void packPlane(int index, int downscale, ByteBuffer output, int width, int height) {
+        ByteBuffer plane = mPlanes[index];
+        int pixelStride = mPixelStrides[index];
+        int rowStride = mRowStrides[index];
+        int planeWidth = index == 0 ? mWidth : (mWidth + 1) / 2;
+        int planeHeight = index == 0 ? mHeight : (mHeight + 1) / 2;
+        int position = plane.position();
+        int limit = plane.limit();
+        for (int y = 0; y < height; y++) {
+            int row = Math.min(y * downscale, planeHeight - 1) * rowStride;
+            if (pixelStride == 1 && downscale == 1) {
+                plane.limit(row + width);
+                plane.position(row);
+                output.put(plane);
+            } else {
+                for (int x = 0; x < width; x++) {
+                    output.put(plane.get(row + Math.min(x * downscale, planeWidth - 1) * pixelStride));
+                }
+            }
+        }
+        plane.limit(limit);
+        plane.position(position);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.cameramotiontracker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Native entry points of yuv2rgb-lib, taking the YUV_420_888 planes as plain buffers and strides.
+ * Free of Android classes, so that the same native code can be driven on a host JVM, see the benchmark module.
+ * The Android API on top of it is YuvConverter.
+ */
+final class YuvNative {
+    // channel order of 3 channel output, cameramotiontracker::ChannelOrder
+    static final int CHANNEL_ORDER_RGB = 0;
+    static final int CHANNEL_ORDER_BGR = 1;
+
+    private YuvNative() {}
+
+    static {
+        // define this in CMakeLists.txt file.
+        System.loadLibrary("yuv2rgb-lib");
+    }
+
+    static native boolean yuv420toArgbNative(
+            int width,
+            int height,
+            ByteBuffer yByteBuffer,
+            ByteBuffer uByteBuffer,
+            ByteBuffer vByteBuffer,
+            int yPixelStride,
+            int uvPixelStride,
+            int yRowStride,
+            int uvRowStride,
+            int[] argbOutput);
+
+    static native boolean yuv420toMatNative(
+            int width,
+            int height,
+            ByteBuffer yByteBuffer,
+            ByteBuffer uByteBuffer,
+            ByteBuffer vByteBuffer,
+            int yPixelStride,
+            int uvPixelStride,
+            int yRowStride,
+            int uvRowStride,
+            long matDataAddress,
+            int matRowStride,
+            int channelOrder);
+
+    static native boolean yuv420CropResizeNative(
+            int width,
+            int height,
+            ByteBuffer yByteBuffer,
+            ByteBuffer uByteBuffer,
+            ByteBuffer vByteBuffer,
+            int yPixelStride,
+            int uvPixelStride,
+            int yRowStride,
+            int uvRowStride,
+            float cropYMin,
+            float cropXMin,
+            float cropYMax,
+            float cropXMax,
+            int rotation,
+            boolean mirror,
+            ByteBuffer output,
+            int outputWidth,
+            int outputHeight,
+            int channelOrder,
+            int elementType,
+            float valueScale,
+            float valueOffset);
+
+    static native void setThreadCountNative(int threadCount);
+
+    static native int getThreadCountNative();
+}
@@ -0,0 +1,62 @@
+// yuv2rgb_benchmark.cc
+//
+// Host benchmark for the YUV to RGB converters.
+// Usage: yuv2rgb_benchmark [width height [iterations [threads]]]
+
+#include "yuv2rgb.h"
+
+#include <stdio.h>
+#include <stdlib.h>
+
+#include <chrono>
+#include <vector>
+
+using namespace cameramotiontracker;
+
+static const char* KernelName(Yuv2RgbKernel kernel) {
+  switch (kernel) {
+    case kKernelScalar: return "scalar";
+    case kKernelNeon: return "neon";
+    case kKernelSse2: return "sse2";
+  }
+  return "unknown";
+}
+
+int main(int argc, char** argv) {
+  int width = argc > 2 ? atoi(argv[1]) : 1920;
+  int height = argc > 2 ? atoi(argv[2]) : 1080;
+  int iterations = argc > 3 ? atoi(argv[3]) : 100;
+  int threads = argc > 4 ? atoi(argv[4]) : 1;
+  SetThreadCount(threads);
+
+  // semi planar layout, as most camera HALs deliver YUV_420_888
+  std::vector<uint8_t> y(width * height);
+  std::vector<uint8_t> chroma(width * ((height + 1) / 2) + 1);
+  for (auto& value : y) value = static_cast<uint8_t>(rand());
+  for (auto& value : chroma) value = static_cast<uint8_t>(rand());
+  std::vector<uint8_t> rgb(width * height * 3);
+  std::vector<int> argb(width * height);
+
+  for (Yuv2RgbKernel kernel : {kKernelScalar, kKernelNeon, kKernelSse2}) {
+    SetKernel(kernel);
+    if (GetKernel() != kernel) continue;
+
+    for (int layout = 0; layout < 2; ++layout) {
+      auto start = std::chrono::steady_clock::now();
+      for (int i = 0; i < iterations; ++i) {
+        if (layout == 0) {
+          Yuv2Rgb888(width, height, y.data(), chroma.data() + 1, chroma.data(), 1, 2, width,
+                     width, rgb.data(), width * 3, kChannelOrderRgb);
+        } else {
+          Yuv2Rgb(width, height, y.data(), chroma.data() + 1, chroma.data(), 1, 2, width,
+                  width, argb.data());
+        }
+      }
+      auto elapsed = std::chrono::steady_clock::now() - start;
+      double ms = std::chrono::duration<double, std::milli>(elapsed).count() / iterations;
+      printf("%-7s %-4s %dx%d, %d thread(s): %.3f ms/frame\n", KernelName(kernel),
+             layout == 0 ? "rgb" : "argb", width, height, GetThreadCount(), ms);
+    }
+  }
+  return 0;
+}
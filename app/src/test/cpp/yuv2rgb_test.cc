@@ -0,0 +1,256 @@
+// yuv2rgb_test.cc
+//
+// Host test for the YUV to RGB converters. Checks that every kernel available on the
+// host produces exactly the output of the scalar kernel, and that the scalar kernel stays
+// within rounding distance of the floating point BT.601 formula, and that the crop
+// kernel orients the image like rotating and mirroring the converted image does.
+
+#include "yuv2rgb.h"
+
+#include <math.h>
+#include <stdio.h>
+#include <stdlib.h>
+
+#include <algorithm>
+#include <vector>
+
+using namespace cameramotiontracker;
+
+static int g_failures = 0;
+
+#define EXPECT(condition, ...)                                  \
+  do {                                                          \
+    if (!(condition)) {                                         \
+      fprintf(stderr, "%s:%d: ", __FILE__, __LINE__);           \
+      fprintf(stderr, __VA_ARGS__);                             \
+      fprintf(stderr, "\n");                                    \
+      ++g_failures;                                             \
+    }                                                           \
+  } while (0)
+
+// YUV_420_888 image in either planar (I420) or semi planar (NV21) layout,
+// with padded rows like camera buffers usually have.
+struct TestImage {
+  int width;
+  int height;
+  int y_row_stride;
+  int uv_row_stride;
+  int uv_pixel_stride;
+  std::vector<uint8_t> y;
+  std::vector<uint8_t> chroma;
+  const uint8_t* u;
+  const uint8_t* v;
+
+  TestImage(int w, int h, bool semi_planar) : width(w), height(h) {
+    int chroma_width = (w + 1) / 2;
+    int chroma_height = (h + 1) / 2;
+    y_row_stride = w + 7;
+    uv_pixel_stride = semi_planar ? 2 : 1;
+    uv_row_stride = chroma_width * uv_pixel_stride + 5;
+    y.resize(y_row_stride * h);
+    for (auto& value : y) value = static_cast<uint8_t>(rand());
+    if (semi_planar) {
+      // V and U interleaved in one buffer, U plane starts one byte in (NV21)
+      chroma.resize(uv_row_stride * chroma_height + 1);
+      v = chroma.data();
+      u = chroma.data() + 1;
+    } else {
+      chroma.resize(uv_row_stride * chroma_height * 2);
+      u = chroma.data();
+      v = chroma.data() + uv_row_stride * chroma_height;
+    }
+    for (auto& value : chroma) value = static_cast<uint8_t>(rand());
+  }
+
+  std::vector<uint8_t> ToRgb(Yuv2RgbKernel kernel, ChannelOrder order) const {
+    SetKernel(kernel);
+    std::vector<uint8_t> out(width * height * 3);
+    Yuv2Rgb888(width, height, y.data(), u, v, 1, uv_pixel_stride, y_row_stride, uv_row_stride,
+               out.data(), width * 3, order);
+    return out;
+  }
+
+  std::vector<int> ToArgb(Yuv2RgbKernel kernel) const {
+    SetKernel(kernel);
+    std::vector<int> out(width * height);
+    Yuv2Rgb(width, height, y.data(), u, v, 1, uv_pixel_stride, y_row_stride, uv_row_stride,
+            out.data());
+    return out;
+  }
+};
+
+static int ReferenceChannel(float value) {
+  return static_cast<int>(lrintf(fminf(fmaxf(value, 0.0f), 255.0f)));
+}
+
+static void TestScalarMatchesFloatFormula(const TestImage& image) {
+  std::vector<uint8_t> rgb = image.ToRgb(kKernelScalar, kChannelOrderRgb);
+  int max_error = 0;
+  for (int y = 0; y < image.height; ++y) {
+    for (int x = 0; x < image.width; ++x) {
+      int uv_idx = (y / 2) * image.uv_row_stride + (x / 2) * image.uv_pixel_stride;
+      float y_val = image.y[y * image.y_row_stride + x];
+      float u_val = image.u[uv_idx] - 128.0f;
+      float v_val = image.v[uv_idx] - 128.0f;
+      int expected[3] = {
+          ReferenceChannel(y_val + 1.370705f * v_val),
+          ReferenceChannel(y_val - 0.698001f * v_val - 0.337633f * u_val),
+          ReferenceChannel(y_val + 1.732446f * u_val)};
+      for (int c = 0; c < 3; ++c) {
+        int error = abs(expected[c] - rgb[(y * image.width + x) * 3 + c]);
+        if (error > max_error) max_error = error;
+      }
+    }
+  }
+  EXPECT(max_error <= 2, "scalar kernel is off by %d from the float formula", max_error);
+}
+
+static void TestKernelMatchesScalar(const TestImage& image, Yuv2RgbKernel kernel) {
+  for (ChannelOrder order : {kChannelOrderRgb, kChannelOrderBgr}) {
+    EXPECT(image.ToRgb(kernel, order) == image.ToRgb(kKernelScalar, order),
+           "kernel %d differs from scalar, %dx%d, uv pixel stride %d, order %d", kernel,
+           image.width, image.height, image.uv_pixel_stride, order);
+  }
+  EXPECT(image.ToArgb(kernel) == image.ToArgb(kKernelScalar),
+         "ARGB of kernel %d differs from scalar, %dx%d, uv pixel stride %d", kernel,
+         image.width, image.height, image.uv_pixel_stride);
+}
+
+static void TestSaturation() {
+  // full luma with extreme chroma must clamp instead of wrapping around
+  uint8_t y[4] = {255, 255, 0, 0};
+  uint8_t u[1] = {255};
+  uint8_t v[1] = {255};
+  uint8_t rgb[12];
+  SetKernel(kKernelScalar);
+  Yuv2Rgb888(2, 2, y, u, v, 1, 1, 2, 1, rgb, 6, kChannelOrderRgb);
+  EXPECT(rgb[0] == 255 && rgb[2] == 255, "bright pixel wrapped: %d %d %d", rgb[0], rgb[1], rgb[2]);
+  EXPECT(rgb[7] == 0, "dark pixel wrapped: %d %d %d", rgb[6], rgb[7], rgb[8]);
+}
+
+static void TestStripesMatchSingleThread(const TestImage& image) {
+  SetThreadCount(1);
+  std::vector<uint8_t> single = image.ToRgb(DetectKernel(), kChannelOrderRgb);
+  std::vector<uint8_t> crop_single(192 * 192 * 3);
+  YuvCropResize(image.width, image.height, image.y.data(), image.u, image.v, 1,
+                image.uv_pixel_stride, image.y_row_stride, image.uv_row_stride,
+                -0.1f, 0.2f, 0.9f, 1.1f, 90, true, crop_single.data(), 192, 192, kChannelOrderRgb,
+                kElementUint8, 1.0f, 0.0f);
+
+  for (int threads : {2, 3, 8}) {
+    SetThreadCount(threads);
+    EXPECT(GetThreadCount() == threads, "thread count %d not applied", threads);
+    EXPECT(image.ToRgb(DetectKernel(), kChannelOrderRgb) == single,
+           "%d threads differ from one, %dx%d", threads, image.width, image.height);
+    std::vector<uint8_t> crop(192 * 192 * 3);
+    YuvCropResize(image.width, image.height, image.y.data(), image.u, image.v, 1,
+                  image.uv_pixel_stride, image.y_row_stride, image.uv_row_stride,
+                  -0.1f, 0.2f, 0.9f, 1.1f, 90, true, crop.data(), 192, 192, kChannelOrderRgb,
+                  kElementUint8, 1.0f, 0.0f);
+    EXPECT(crop == crop_single, "crop with %d threads differs from one", threads);
+  }
+  SetThreadCount(1);
+}
+
+static void TestCropElementTypes(const TestImage& image) {
+  const int size = 64;
+  std::vector<uint8_t> as_uint8(size * size * 3);
+  std::vector<int8_t> as_int8(size * size * 3);
+  std::vector<float> as_float(size * size * 3);
+  std::vector<uint8_t> as_scaled(size * size * 3);
+  void* outputs[] = {as_uint8.data(), as_int8.data(), as_float.data(), as_scaled.data()};
+  const ElementType types[] = {kElementUint8, kElementInt8, kElementFloat32, kElementUint8};
+  // int8 with zero point -128, float normalized to [-1, 1], uint8 with scale 2
+  const float scales[] = {1.0f, 1.0f, 1.0f / 127.5f, 0.5f};
+  const float offsets[] = {0.0f, -128.0f, -1.0f, 0.0f};
+  for (int t = 0; t < 4; ++t) {
+    YuvCropResize(image.width, image.height, image.y.data(), image.u, image.v, 1,
+                  image.uv_pixel_stride, image.y_row_stride, image.uv_row_stride,
+                  -0.25f, -0.25f, 1.0f, 1.0f, 270, false, outputs[t], size, size,
+                  kChannelOrderBgr, types[t], scales[t], offsets[t]);
+  }
+  for (int i = 0; i < size * size * 3; ++i) {
+    const int p = as_uint8[i];
+    bool ok = as_int8[i] == p - 128 && fabsf(as_float[i] - (p / 127.5f - 1.0f)) < 1e-6f
+              && as_scaled[i] == lrintf(p * 0.5f);
+    EXPECT(ok, "element types disagree at %d: %d %d %f %d", i, p, as_int8[i], as_float[i],
+           as_scaled[i]);
+    if (!ok) break;
+  }
+}
+
+// Packed 3 channel image, as Yuv2Rgb888 writes it.
+struct RgbImage {
+  int width;
+  int height;
+  std::vector<uint8_t> pixels;
+
+  const uint8_t* At(int x, int y) const { return &pixels[(y * width + x) * 3]; }
+};
+
+static RgbImage RotateClockwise(const RgbImage& image) {
+  RgbImage rotated = {image.height, image.width, std::vector<uint8_t>(image.pixels.size())};
+  for (int y = 0; y < rotated.height; ++y) {
+    for (int x = 0; x < rotated.width; ++x) {
+      const uint8_t* in = image.At(y, image.height - 1 - x);
+      std::copy(in, in + 3, &rotated.pixels[(y * rotated.width + x) * 3]);
+    }
+  }
+  return rotated;
+}
+
+static RgbImage Mirror(const RgbImage& image) {
+  RgbImage mirrored = {image.width, image.height, std::vector<uint8_t>(image.pixels.size())};
+  for (int y = 0; y < image.height; ++y) {
+    for (int x = 0; x < image.width; ++x) {
+      const uint8_t* in = image.At(image.width - 1 - x, y);
+      std::copy(in, in + 3, &mirrored.pixels[(y * image.width + x) * 3]);
+    }
+  }
+  return mirrored;
+}
+
+// Crops the whole oriented image at its own size, so every output pixel must be the
+// pixel the converted image has there after rotating it clockwise and mirroring it.
+static void TestCropOrientation(const TestImage& image) {
+  RgbImage oriented = {image.width, image.height, image.ToRgb(kKernelScalar, kChannelOrderRgb)};
+  for (int rotation : {0, 90, 180, 270}) {
+    for (bool mirror : {false, true}) {
+      RgbImage expected = mirror ? Mirror(oriented) : oriented;
+      std::vector<uint8_t> crop(expected.pixels.size());
+      YuvCropResize(image.width, image.height, image.y.data(), image.u, image.v, 1,
+                    image.uv_pixel_stride, image.y_row_stride, image.uv_row_stride,
+                    0.0f, 0.0f, 1.0f, 1.0f, rotation, mirror, crop.data(), expected.width,
+                    expected.height, kChannelOrderRgb, kElementUint8, 1.0f, 0.0f);
+      EXPECT(crop == expected.pixels,
+             "crop rotated by %d, mirror %d differs, %dx%d, uv pixel stride %d", rotation, mirror, image.width, image.height, image.uv_pixel_stride);
+    }
+    oriented = RotateClockwise(oriented);
+  }
+}
+
+int main() {
+  srand(42);
+  const int sizes[][2] = {{2, 2}, {15, 3}, {16, 16}, {33, 17}, {64, 48}, {640, 480}, {1279, 721}};
+  const Yuv2RgbKernel kernels[] = {kKernelNeon, kKernelSse2};
+
+  TestSaturation();
+  for (const auto& size : sizes) {
+    for (bool semi_planar : {false, true}) {
+      TestImage image(size[0], size[1], semi_planar);
+      TestScalarMatchesFloatFormula(image);
+      TestStripesMatchSingleThread(image);
+      TestCropElementTypes(image);
+      TestCropOrientation(image);
+      for (Yuv2RgbKernel kernel : kernels) {
+        SetKernel(kernel);
+        if (GetKernel() != kernel) continue;  // not supported on this host
+        TestKernelMatchesScalar(image, kernel);
+      }
+    }
+  }
+
+  SetKernel(DetectKernel());
+  printf("detected kernel %d, %d failure(s)\n", DetectKernel(), g_failures);
+  return g_failures == 0 ? 0 : 1;
+}
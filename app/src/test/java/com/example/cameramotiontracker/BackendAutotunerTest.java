@@ -0,0 +1,152 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BackendAutotunerTest {
+
+    /**
+     * Fake trials advancing a fake clock by a latency per configuration and returning a fixed output.
+     */
+    private static class FakeTrials implements BackendAutotuner.TrialFactory {
+        final long[] mClock = new long[1];
+        final Map<String, Long> mLatencies = new HashMap<>();
+        final Map<String, float[]> mOutputs = new HashMap<>();
+        int mOpenCount;
+
+        void add(String config, long latency, float output) {
+            float[] values = new float[51];
+            Arrays.fill(values, output);
+            add(config, latency, values);
+        }
+
+        void add(String config, long latency, float[] output) {
+            mLatencies.put(config, latency);
+            mOutputs.put(config, output);
+        }
+
+        @Override
+        public BackendAutotuner.Trial open(InferenceBackend backend, int threadCount) {
+            String config = backend.getName() + ":" + threadCount;
+            if (!mLatencies.containsKey(config)) {
+                throw new IllegalArgumentException("Failed to load on " + config);
+            }
+            mOpenCount++;
+            return new BackendAutotuner.Trial() {
+                @Override
+                public void run(float[] output) {
+                    mClock[0] += mLatencies.get(config);
+                    System.arraycopy(mOutputs.get(config), 0, output, 0, output.length);
+                }
+
+                @Override
+                public int getOutputSize() {
+                    return 51;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+
+    private static BackendAutotuner.Config config(String name, int threads) {
+        return new BackendAutotuner.Config(name, threads);
+    }
+
+    @Test
+    public void tune_picksFastestAccurateCandidate() throws Exception {
+        FakeTrials trials = new FakeTrials();
+        trials.add("cpu:1", 40, 0.5f);
+        trials.add("xnnpack:1", 20, 0.505f);
+        trials.add("xnnpack:4", 8, 0.51f);
+        // fastest, but wrong
+        trials.add("nnapi:4", 2, 0.9f);
+        BackendAutotuner autotuner = new BackendAutotuner(trials, () -> trials.mClock[0]);
+
+        List<BackendAutotuner.Config> candidates = Arrays.asList(config("cpu", 1), config("xnnpack", 1),
+                config("xnnpack", 4), config("nnapi", 4), config("cpu", 2));
+        assertEquals(config("xnnpack", 4), autotuner.tune(candidates));
+    }
+
+    @Test
+    public void tune_fallsBackToReference() throws Exception {
+        FakeTrials trials = new FakeTrials();
+        trials.add("cpu:1", 40, 0.5f);
+        trials.add("xnnpack:2", 10, Float.NaN);
+        BackendAutotuner autotuner = new BackendAutotuner(trials, () -> trials.mClock[0]);
+
+        assertEquals(BackendAutotuner.REFERENCE, autotuner.tune(Arrays.asList(config("xnnpack", 2), config("cpu", 4))));
+    }
+
+    // [y, x, score] of 17 keypoints, the first one confident
+    private static float[] keypoints(float confidentY, float otherY, float otherScore) {
+        float[] output = new float[51];
+        for (int i = 0; i < output.length; i += 3) {
+            output[i] = i == 0 ? confidentY : otherY;
+            output[i + 1] = 0.5f;
+            output[i + 2] = i == 0 ? 0.9f : otherScore;
+        }
+        return output;
+    }
+
+    @Test
+    public void tune_comparesOnlyConfidentKeypointPositions() throws Exception {
+        FakeTrials trials = new FakeTrials();
+        trials.add("cpu:1", 40, keypoints(0.5f, 0.2f, 0.1f));
+        // low precision moved unconfident keypoints to another heatmap cell
+        trials.add("xnnpack:4", 10, keypoints(0.505f, 0.3f, 0.11f));
+        // faster, but moved the confident keypoint
+        trials.add("nnapi:4", 5, keypoints(0.6f, 0.2f, 0.1f));
+        // fastest, but wrong scores
+        trials.add("cpu:4", 2, keypoints(0.5f, 0.2f, 0.3f));
+        BackendAutotuner autotuner = new BackendAutotuner(trials, () -> trials.mClock[0]);
+
+        assertEquals(config("xnnpack", 4), autotuner.tune(Arrays.asList(config("xnnpack", 4), config("nnapi", 4),
+                config("cpu", 4))));
+    }
+
+    @Test
+    public void loadOrTune_tunesOnlyOnce() throws Exception {
+        FakeTrials trials = new FakeTrials();
+        trials.add("cpu:1", 40, 0.5f);
+        trials.add("xnnpack:2", 10, 0.5f);
+        BackendAutotuner autotuner = new BackendAutotuner(trials, () -> trials.mClock[0]);
+        Map<String, String> values = new HashMap<>();
+        BackendAutotuner.Store store = new BackendAutotuner.Store() {
+            @Override
+            public String get(String key) {
+                return values.get(key);
+            }
+
+            @Override
+            public void put(String key, String value) {
+                values.put(key, value);
+            }
+        };
+
+        List<BackendAutotuner.Config> candidates = Arrays.asList(config("xnnpack", 2));
+        assertEquals(config("xnnpack", 2), autotuner.loadOrTune(store, "key", candidates));
+        int openCount = trials.mOpenCount;
+        assertEquals(config("xnnpack", 2), autotuner.loadOrTune(store, "key", candidates));
+        assertEquals(openCount, trials.mOpenCount);
+        assertEquals("xnnpack:2", values.get("key"));
+    }
+
+    @Test
+    public void config_parsesOnlyValidValues() {
+        assertEquals(config("gpu", 4), BackendAutotuner.Config.parse("gpu:4"));
+        assertNull(BackendAutotuner.Config.parse(null));
+        assertNull(BackendAutotuner.Config.parse("gpu"));
+        assertNull(BackendAutotuner.Config.parse("tpu:4"));
+        assertNull(BackendAutotuner.Config.parse("cpu:0"));
+        assertNull(BackendAutotuner.Config.parse("cpu:x"));
+    }
+}
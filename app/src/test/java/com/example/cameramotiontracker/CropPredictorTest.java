@@ -0,0 +1,67 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CropPredictorTest {
+    private static final double EPSILON = 1e-6;
+    private static final long FRAME_NANOS = 33333333L;
+    private static final int HEIGHT = 640;
+    private static final int WIDTH = 480;
+
+    private static Pose standingPerson(long frame, float centerY, float centerX, float score) {
+        Pose pose = new Pose();
+        for (int i = 0; i < Pose.JOINT_COUNT; i++) {
+            pose.set(i, centerY - 80 + 160f * i / (Pose.JOINT_COUNT - 1), centerX + (i % 2 == 0 ? -10 : 10), score);
+        }
+        pose.setTimestamp(frame * FRAME_NANOS);
+        return pose;
+    }
+
+    private static double centerX(double[] cropRegion) {
+        return (cropRegion[CropRegion.X_MIN] + cropRegion[CropRegion.X_MAX]) / 2 * WIDTH;
+    }
+
+    @Test
+    public void determine_matchesCropRegionAtRest() {
+        CropPredictor predictor = new CropPredictor();
+        double[] cropRegion = new double[CropRegion.SIZE];
+        for (int frame = 1; frame <= 5; frame++) {
+            Pose pose = standingPerson(frame, 320, 240, 0.9f);
+            predictor.determine(pose, HEIGHT, WIDTH, cropRegion);
+            assertArrayEquals(CropRegion.determine(pose, HEIGHT, WIDTH), cropRegion, EPSILON);
+        }
+    }
+
+    @Test
+    public void determine_leadsAndGrowsWithMotion() {
+        CropPredictor predictor = new CropPredictor();
+        double[] cropRegion = new double[CropRegion.SIZE];
+        Pose pose = null;
+        // 6 pixels to the right every frame
+        for (int frame = 1; frame <= 10; frame++) {
+            pose = standingPerson(frame, 320, 150 + 6 * frame, 0.9f);
+            predictor.determine(pose, HEIGHT, WIDTH, cropRegion);
+        }
+        double[] atRest = CropRegion.determine(pose, HEIGHT, WIDTH);
+        // two frames ahead, grown by as much on every side
+        assertEquals(centerX(atRest) + 12, centerX(cropRegion), 1e-3);
+        assertEquals(atRest[CropRegion.HEIGHT] + 24.0 / HEIGHT, cropRegion[CropRegion.HEIGHT], 1e-5);
+    }
+
+    @Test
+    public void determine_startsOverWhenTorsoIsLost() {
+        CropPredictor predictor = new CropPredictor();
+        double[] cropRegion = new double[CropRegion.SIZE];
+        predictor.determine(standingPerson(1, 320, 150, 0.9f), HEIGHT, WIDTH, cropRegion);
+        predictor.determine(standingPerson(2, 320, 180, 0.9f), HEIGHT, WIDTH, cropRegion);
+
+        predictor.determine(standingPerson(3, 320, 210, 0.2f), HEIGHT, WIDTH, cropRegion);
+        assertArrayEquals(CropRegion.init(HEIGHT, WIDTH), cropRegion, EPSILON);
+
+        Pose pose = standingPerson(4, 320, 240, 0.9f);
+        predictor.determine(pose, HEIGHT, WIDTH, cropRegion);
+        assertArrayEquals(CropRegion.determine(pose, HEIGHT, WIDTH), cropRegion, EPSILON);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CropRegionTest {
+    private static final double EPSILON = 1e-9;
+
+    private static Pose standingPerson(float centerY, float centerX, float halfHeight, float score) {
+        Pose pose = new Pose();
+        for (int i = 0; i < Pose.JOINT_COUNT; i++) {
+            pose.set(i, centerY - halfHeight + 2 * halfHeight * i / (Pose.JOINT_COUNT - 1),
+                    centerX + (i % 2 == 0 ? -10 : 10), score);
+        }
+        return pose;
+    }
+
+    @Test
+    public void init_coversImageWithCenteredSquare() {
+        double[] portrait = CropRegion.init(640, 480);
+        assertArrayEquals(new double[]{0, -1.0 / 6, 1, 7.0 / 6, 1, 4.0 / 3}, portrait, EPSILON);
+        double[] landscape = CropRegion.init(480, 640);
+        assertArrayEquals(new double[]{-1.0 / 6, 0, 7.0 / 6, 1, 4.0 / 3, 1}, landscape, EPSILON);
+    }
+
+    @Test
+    public void mapKeypoints_scalesCropCoordinatesToImage() {
+        double[] cropRegion = {0.25, 0.5, 0.75, 1.0, 0.5, 0.5};
+        float[] output = new float[17 * 3];
+        output[0] = 0.5f;
+        output[1] = 0.5f;
+        output[2] = 0.9f;
+        Pose pose = new Pose();
+        CropRegion.mapKeypoints(output, cropRegion, 400, 200, pose);
+        assertEquals(200, pose.getY(Pose.NOSE), EPSILON);
+        assertEquals(150, pose.getX(Pose.NOSE), EPSILON);
+        assertEquals(0.9, pose.getScore(Pose.NOSE), 1e-6);
+    }
+
+    @Test
+    public void determine_fallsBackToInitWithoutTorso() {
+        Pose pose = standingPerson(320, 240, 100, 0.2f);
+        assertArrayEquals(CropRegion.init(640, 480), CropRegion.determine(pose, 640, 480), EPSILON);
+    }
+
+    @Test
+    public void determine_cropsSquareAroundHips() {
+        Pose pose = standingPerson(320, 240, 100, 0.9f);
+        double[] cropRegion = CropRegion.determine(pose, 640, 480);
+        double centerY = ((double) pose.getY(Pose.LEFT_HIP) + pose.getY(Pose.RIGHT_HIP)) / 2;
+        // farthest keypoint from the hips, with a margin of 20%
+        double half = (centerY - pose.getY(Pose.NOSE)) * 1.2;
+        assertEquals((centerY - half) / 640, cropRegion[CropRegion.Y_MIN], EPSILON);
+        assertEquals((240 - half) / 480, cropRegion[CropRegion.X_MIN], EPSILON);
+        assertEquals((centerY + half) / 640, cropRegion[CropRegion.Y_MAX], EPSILON);
+        assertEquals((240 + half) / 480, cropRegion[CropRegion.X_MAX], EPSILON);
+        assertEquals(2 * half / 640, cropRegion[CropRegion.HEIGHT], EPSILON);
+        assertEquals(2 * half / 480, cropRegion[CropRegion.WIDTH], EPSILON);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameOrientationTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    private static float[] toOriented(float x, float y, int rotation, boolean mirror) {
+        float[] points = {x, y};
+        FrameOrientation.toOriented(points, 1, WIDTH, HEIGHT, rotation, mirror);
+        return points;
+    }
+
+    @Test
+    public void toOriented_rotatesClockwiseThenMirrors() {
+        // the top left corner of the camera frame
+        assertArrayEquals(new float[]{0, 0}, toOriented(0, 0, 0, false), 0);
+        assertArrayEquals(new float[]{HEIGHT, 0}, toOriented(0, 0, 90, false), 0);
+        assertArrayEquals(new float[]{WIDTH, HEIGHT}, toOriented(0, 0, 180, false), 0);
+        assertArrayEquals(new float[]{0, WIDTH}, toOriented(0, 0, 270, false), 0);
+        assertArrayEquals(new float[]{0, 0}, toOriented(0, 0, 90, true), 0);
+        assertArrayEquals(new float[]{WIDTH - 10, 20}, toOriented(10, 20, 0, true), 0);
+        assertArrayEquals(new float[]{HEIGHT - 20, 10}, toOriented(10, 20, 90, false), 0);
+    }
+
+    @Test
+    public void toCamera_undoesToOriented() {
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            for (boolean mirror : new boolean[]{false, true}) {
+                float[] points = {10, 20, 300.5f, 450.25f, 639, 1};
+                float[] expected = points.clone();
+                FrameOrientation.toOriented(points, 3, WIDTH, HEIGHT, rotation, mirror);
+                FrameOrientation.toCamera(points, 3, WIDTH, HEIGHT, rotation, mirror);
+                assertArrayEquals(expected, points, 1e-4f);
+            }
+        }
+    }
+}
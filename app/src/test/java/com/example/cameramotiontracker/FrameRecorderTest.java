@@ -0,0 +1,163 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameRecorderTest {
+    private static final int WIDTH = 12;
+    private static final int HEIGHT = 8;
+    // rows padded like many camera HALs do
+    private static final int ROW_STRIDE = 16;
+
+    /**
+     * Returns an NV21 frame with padded rows, every pixel a function of plane, position and index.
+     */
+    private static YuvFrame cameraFrame(int index) {
+        ByteBuffer y = ByteBuffer.allocateDirect(ROW_STRIDE * (HEIGHT - 1) + WIDTH);
+        ByteBuffer vu = ByteBuffer.allocateDirect(ROW_STRIDE * (HEIGHT / 2 - 1) + WIDTH);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int x = 0; x < WIDTH; x++) {
+                y.put(row * ROW_STRIDE + x, (byte) (index * 7 + row * 16 + x));
+            }
+        }
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                vu.put(row * ROW_STRIDE + x * 2, (byte) (100 + index + row * 8 + x));
+                vu.put(row * ROW_STRIDE + x * 2 + 1, (byte) (200 - index - row * 8 - x));
+            }
+        }
+        ByteBuffer u = vu.duplicate();
+        u.position(1);
+        YuvFrame frame = new YuvFrame();
+        frame.set(WIDTH, HEIGHT, 5000000L + index * 33333333L);
+        frame.setOrientation(270, true);
+        frame.setPlane(0, y, 1, ROW_STRIDE);
+        frame.setPlane(1, u.slice(), 2, ROW_STRIDE);
+        frame.setPlane(2, vu, 2, ROW_STRIDE);
+        return frame;
+    }
+
+    private static int pixel(YuvFrame frame, int plane, int x, int y) {
+        return frame.getPlane(plane).get(y * frame.getRowStride(plane) + x * frame.getPixelStride(plane)) & 0xff;
+    }
+
+    private static Pose pose(int index) {
+        Pose pose = new Pose();
+        for (int i = 0; i < Pose.JOINT_COUNT; i++) {
+            pose.set(i, index + i, index * 2 + i, 0.5f);
+        }
+        pose.setTimestamp(cameraFrame(index).getTimestamp());
+        return pose;
+    }
+
+    private static File record(int frameCount, int downscale, boolean lumaOnly) throws Exception {
+        File file = File.createTempFile("recording", ".cmtr");
+        file.deleteOnExit();
+        try (FrameRecorder recorder = new FrameRecorder(file, WIDTH, HEIGHT, downscale, lumaOnly, 17,
+                FrameRecorder.DEFAULT_FRAME_BUFFERS)) {
+            for (int i = 0; i < frameCount; i++) {
+                // retried, the writer is meant to keep up with a camera rather than a loop
+                while (!recorder.recordFrame(cameraFrame(i))) {
+                    Thread.sleep(1);
+                }
+                while (!recorder.recordKeypoints(pose(i))) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void recordFrame_keepsFramesAndKeypoints() throws Exception {
+        File file = record(20, 1, false);
+        try (RecordedFrameSource source = new RecordedFrameSource(file)) {
+            assertEquals(20, source.getFrameCount());
+            assertEquals(20, source.getKeypointsCount());
+            YuvFrame frame = new YuvFrame();
+            for (int i = 0; i < 20; i++) {
+                assertTrue(source.read(frame));
+                YuvFrame expected = cameraFrame(i);
+                assertEquals(WIDTH, frame.getWidth());
+                assertEquals(HEIGHT, frame.getHeight());
+                assertEquals(expected.getTimestamp(), frame.getTimestamp());
+                assertEquals(270, frame.getRotation());
+                assertTrue(frame.isMirror());
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        assertEquals(pixel(expected, 0, x, y), pixel(frame, 0, x, y));
+                    }
+                }
+                for (int y = 0; y < HEIGHT / 2; y++) {
+                    for (int x = 0; x < WIDTH / 2; x++) {
+                        assertEquals(pixel(expected, 1, x, y), pixel(frame, 1, x, y));
+                        assertEquals(pixel(expected, 2, x, y), pixel(frame, 2, x, y));
+                    }
+                }
+            }
+            assertFalse(source.read(frame));
+
+            // random access through the index
+            int index = source.findFrame(cameraFrame(13).getTimestamp() - 1);
+            assertEquals(13, index);
+            source.seek(index);
+            assertTrue(source.read(frame));
+            assertEquals(cameraFrame(13).getTimestamp(), frame.getTimestamp());
+
+            Pose pose = new Pose();
+            int keypoints = source.findKeypoints(frame.getTimestamp());
+            assertEquals(frame.getTimestamp(), source.getKeypointsTimestamp(keypoints));
+            source.readKeypoints(keypoints, pose);
+            assertEquals(frame.getTimestamp(), pose.getTimestamp());
+            assertEquals(13 + 16, pose.getY(Pose.RIGHT_ANKLE), 0);
+            assertEquals(26 + 16, pose.getX(Pose.RIGHT_ANKLE), 0);
+            assertEquals(0.5, pose.getScore(Pose.RIGHT_ANKLE), 0);
+        }
+    }
+
+    @Test
+    public void recordFrame_downscalesLumaOnly() throws Exception {
+        File file = record(3, 2, true);
+        try (RecordedFrameSource source = new RecordedFrameSource(file)) {
+            YuvFrame frame = new YuvFrame();
+            for (int i = 0; i < 3; i++) {
+                assertTrue(source.read(frame));
+                YuvFrame expected = cameraFrame(i);
+                assertEquals(WIDTH / 2, frame.getWidth());
+                assertEquals(HEIGHT / 2, frame.getHeight());
+                for (int y = 0; y < HEIGHT / 2; y++) {
+                    for (int x = 0; x < WIDTH / 2; x++) {
+                        assertEquals(pixel(expected, 0, x * 2, y * 2), pixel(frame, 0, x, y));
+                        assertEquals(128, pixel(frame, 1, x / 2, y / 2));
+                        assertEquals(128, pixel(frame, 2, x / 2, y / 2));
+                    }
+                }
+            }
+            assertFalse(source.read(frame));
+        }
+    }
+
+    @Test
+    public void open_scansRecordingWithoutIndex() throws Exception {
+        File file = record(6, 1, false);
+        // drop the index and trailer and cut into the last record, as if the app died while recording
+        int indexSize = FrameRecording.RECORD_HEADER_SIZE + 4 + 12 * FrameRecording.INDEX_ENTRY_SIZE;
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(raw.length() - FrameRecording.TRAILER_SIZE - indexSize - 30);
+        }
+        try (RecordedFrameSource source = new RecordedFrameSource(file)) {
+            assertEquals(11, source.getFrameCount() + source.getKeypointsCount());
+            YuvFrame frame = new YuvFrame();
+            for (int i = 0; i < source.getFrameCount(); i++) {
+                assertTrue(source.read(frame));
+                assertEquals(cameraFrame(i).getTimestamp(), frame.getTimestamp());
+            }
+            assertFalse(source.read(frame));
+        }
+    }
+}
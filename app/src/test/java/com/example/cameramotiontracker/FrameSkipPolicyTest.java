@@ -0,0 +1,83 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameSkipPolicyTest {
+    private static final long FRAME_NANOS = 33333333L;
+
+    /**
+     * Returns a pose 170 pixels tall with its keypoints moved right by x.
+     */
+    private static Pose person(long frame, float x, float score) {
+        Pose pose = new Pose();
+        for (int i = 0; i < Pose.JOINT_COUNT; i++) {
+            pose.set(i, 100 + 10 * i, x + (i % 2 == 0 ? -20 : 20), score);
+        }
+        pose.setTimestamp(frame * FRAME_NANOS);
+        return pose;
+    }
+
+    private static int keyframes(FrameSkipPolicy policy, int frames) {
+        int keyframes = 0;
+        for (int i = 0; i < frames; i++) {
+            if (policy.nextIsKeyframe()) {
+                keyframes++;
+            }
+        }
+        return keyframes;
+    }
+
+    @Test
+    public void nextIsKeyframe_startsWithKeyframes() {
+        FrameSkipPolicy policy = new FrameSkipPolicy(Pose.JOINT_COUNT);
+        assertTrue(policy.nextIsKeyframe());
+        assertTrue(policy.nextIsKeyframe());
+        assertEquals(1, policy.getInterval());
+    }
+
+    @Test
+    public void update_skipsMoreFramesAtRest() {
+        FrameSkipPolicy policy = new FrameSkipPolicy(Pose.JOINT_COUNT);
+        for (int frame = 1; frame <= 20; frame++) {
+            policy.update(person(frame, 200, 0.9f), true, 1.0f);
+        }
+        assertEquals(FrameSkipPolicy.DEFAULT_MAX_INTERVAL, policy.getInterval());
+        policy.nextIsKeyframe();
+        assertEquals(3, keyframes(policy, 12));
+
+        // 20 pixels a frame, more than 3 body sizes a second
+        for (int frame = 21; frame <= 30; frame++) {
+            policy.update(person(frame, 200 + 20 * frame, 0.9f), true, 1.0f);
+        }
+        assertEquals(1, policy.getInterval());
+        assertEquals(12, keyframes(policy, 12));
+    }
+
+    @Test
+    public void update_requestsKeyframeWhenTrackingIsLost() {
+        FrameSkipPolicy policy = new FrameSkipPolicy(Pose.JOINT_COUNT);
+        for (int frame = 1; frame <= 20; frame++) {
+            policy.update(person(frame, 200, 0.9f), true, 1.0f);
+        }
+        policy.nextIsKeyframe();
+        assertFalse(policy.nextIsKeyframe());
+        policy.update(person(21, 200, 0.9f), false, 0.3f);
+        assertTrue(policy.nextIsKeyframe());
+        assertFalse(policy.nextIsKeyframe());
+
+        // without a body every frame looks for it
+        policy.update(person(22, 200, 0.1f), false, 1.0f);
+        assertEquals(1, policy.getInterval());
+        assertEquals(4, keyframes(policy, 4));
+    }
+
+    @Test
+    public void intervalFor_scalesBetweenLowAndHighMotion() {
+        FrameSkipPolicy policy = new FrameSkipPolicy(Pose.JOINT_COUNT, 5, 1.0f, 3.0f, 0.5f);
+        assertEquals(5, policy.intervalFor(0.5f));
+        assertEquals(3, policy.intervalFor(2.0f));
+        assertEquals(1, policy.intervalFor(3.5f));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+import org.tensorflow.lite.Interpreter;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class InferenceBackendPolicyTest {
+
+    private static class FakeBackend implements InferenceBackend {
+        final String mName;
+        final boolean mSupported;
+        int mCloseCount;
+
+        FakeBackend(String name, boolean supported) {
+            mName = name;
+            mSupported = supported;
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public boolean isSupported() {
+            return mSupported;
+        }
+
+        @Override
+        public Interpreter.Options createOptions(int threadCount) {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            mCloseCount++;
+        }
+    }
+
+    @Test
+    public void select_skipsUnsupportedAndFallsBackOnFailure() {
+        FakeBackend gpu = new FakeBackend("gpu", false);
+        FakeBackend nnapi = new FakeBackend("nnapi", true);
+        FakeBackend cpu = new FakeBackend("cpu", true);
+        InferenceBackendPolicy policy = new InferenceBackendPolicy(2, Arrays.<InferenceBackend>asList(gpu, nnapi, cpu));
+
+        InferenceBackendPolicy.Selection<String> selection = policy.select(backend -> {
+            assertNotSame(gpu, backend);
+            if (backend == nnapi) {
+                throw new IllegalArgumentException("delegate failed to prepare");
+            }
+            return "loaded on " + backend.getName();
+        });
+
+        assertSame(cpu, selection.getBackend());
+        assertEquals("loaded on cpu", selection.getResult());
+        assertEquals(1, nnapi.mCloseCount);
+        assertEquals(0, cpu.mCloseCount);
+        assertEquals(2, policy.getThreadCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void select_throwsIfNoBackendLoads() {
+        InferenceBackendPolicy policy = new InferenceBackendPolicy(1,
+                Arrays.<InferenceBackend>asList(new FakeBackend("gpu", false), new FakeBackend("cpu", true)));
+        policy.select(backend -> {
+            throw new IllegalArgumentException("model not supported");
+        });
+    }
+
+    @Test
+    public void fromName_createsCpuBackends() {
+        assertEquals("cpu", InferenceBackend.fromName("cpu").getName());
+        assertEquals("xnnpack", InferenceBackend.fromName("xnnpack").getName());
+        assertTrue(InferenceBackend.fromName("xnnpack").isSupported());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromName_rejectsUnknownBackend() {
+        InferenceBackend.fromName("tpu");
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void buckets_coverValuesInOrderWithinRelativeError() {
+        int previous = -1;
+        for (long value = 0; value < 1L << 42; value = value < 64 ? value + 1 : value + value / 7) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index >= previous);
+            assertTrue(index < LatencyHistogram.BUCKET_COUNT);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            if (index < LatencyHistogram.BUCKET_COUNT - 1) {
+                assertTrue(upper >= value);
+                assertTrue(upper - value <= value / 16);
+            }
+            previous = index;
+        }
+    }
+
+    @Test
+    public void snapshot_reportsPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 to 1000 microseconds
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500, snapshot.getMean());
+        assertEquals(1000000, snapshot.getMax());
+        assertEquals(500000, snapshot.getP50(), 500000 / 16);
+        assertEquals(950000, snapshot.getP95(), 950000 / 16);
+        assertEquals(990000, snapshot.getP99(), 990000 / 16);
+        assertTrue(snapshot.getP99() <= snapshot.getMax());
+    }
+
+    @Test
+    public void snapshot_resetStartsOver() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5000);
+        histogram.record(-1);
+        assertEquals(2, histogram.snapshot(true).getCount());
+        LatencyHistogram.Snapshot empty = histogram.snapshot(false);
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getP99());
+        assertEquals(0, empty.getMax());
+    }
+
+    @Test
+    public void frameRateMeter_averagesOverWindow() {
+        FrameRateMeter meter = new FrameRateMeter(4);
+        assertEquals(0, meter.getFramesPerSecond(), 0);
+        // 10 frames 20 ms apart, then the last 4 are 50 ms apart
+        long time = 0;
+        for (int i = 0; i < 10; i++) {
+            meter.tick(time += 20000000L);
+        }
+        assertEquals(50, meter.getFramesPerSecond(), 1e-9);
+        for (int i = 0; i < 4; i++) {
+            meter.tick(time += 50000000L);
+        }
+        assertEquals(20, meter.getFramesPerSecond(), 1e-9);
+    }
+}
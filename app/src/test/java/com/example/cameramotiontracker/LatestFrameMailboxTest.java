@@ -0,0 +1,43 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatestFrameMailboxTest {
+    @Test
+    public void offer_replacesAndReturnsStaleItem() {
+        LatestFrameMailbox<Integer> mailbox = new LatestFrameMailbox<>();
+        assertNull(mailbox.poll());
+        assertNull(mailbox.offer(1));
+        assertEquals(1, (int) mailbox.offer(2));
+        assertEquals(2, (int) mailbox.offer(3));
+        assertEquals(3, (int) mailbox.poll());
+        assertNull(mailbox.poll());
+    }
+
+    @Test
+    public void take_seesNewestItemAndAccountsForAll() throws Exception {
+        final int count = 100000;
+        LatestFrameMailbox<Integer> mailbox = new LatestFrameMailbox<>();
+        long[] dropped = new long[1];
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= count; i++) {
+                if (mailbox.offer(i) != null) {
+                    dropped[0]++;
+                }
+            }
+        });
+        producer.start();
+        long taken = 0;
+        int last = 0;
+        while (last != count) {
+            int item = mailbox.take();
+            assertTrue("items must only get newer", item > last);
+            last = item;
+            taken++;
+        }
+        producer.join();
+        assertEquals(count, taken + dropped[0]);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatestPoseSlotTest {
+
+    private static Pose pose(float x) {
+        Pose pose = new Pose();
+        for (int i = 0; i < Pose.JOINT_COUNT; i++) {
+            pose.set(i, i, x, 0.9f);
+        }
+        return pose;
+    }
+
+    @Test
+    public void acquire_returnsLatestPublishedPose() {
+        LatestPoseSlot slot = new LatestPoseSlot(Pose.JOINT_COUNT);
+        assertFalse(slot.acquire());
+        assertEquals(0, slot.getImageWidth());
+
+        slot.publish(pose(1), 640, 480);
+        slot.publish(pose(2), 640, 480);
+        assertTrue(slot.acquire());
+        assertEquals(2, slot.getPose().getX(0), 0);
+        assertEquals(640, slot.getImageWidth());
+        assertEquals(480, slot.getImageHeight());
+
+        // nothing new: the acquired pose stays
+        assertFalse(slot.acquire());
+        assertEquals(2, slot.getPose().getX(0), 0);
+
+        Pose reused = pose(3);
+        slot.publish(reused, 320, 240);
+        reused.set(0, 0, 4, 0.9f);
+        assertTrue(slot.acquire());
+        assertEquals(3, slot.getPose().getX(0), 0);
+        assertEquals(320, slot.getImageWidth());
+
+        slot.clear();
+        assertTrue(slot.acquire());
+        assertEquals(0, slot.getImageWidth());
+    }
+
+    @Test
+    public void acquire_neverSeesTornPose() throws InterruptedException {
+        final LatestPoseSlot slot = new LatestPoseSlot(Pose.JOINT_COUNT);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Pose pose = new Pose();
+                for (int i = 1; i <= 100000; i++) {
+                    for (int joint = 0; joint < Pose.JOINT_COUNT; joint++) {
+                        pose.set(joint, i, i, 0.9f);
+                    }
+                    slot.publish(pose, i, i);
+                }
+            }
+        });
+        producer.start();
+        float last = 0;
+        while (last < 100000) {
+            if (!slot.acquire()) {
+                continue;
+            }
+            Pose pose = slot.getPose();
+            float value = pose.getX(0);
+            assertTrue(value > last);
+            for (int joint = 0; joint < Pose.JOINT_COUNT; joint++) {
+                assertEquals(value, pose.getX(joint), 0);
+                assertEquals(value, pose.getY(joint), 0);
+            }
+            assertEquals((int) value, slot.getImageWidth());
+            last = value;
+        }
+        producer.join();
+    }
+}
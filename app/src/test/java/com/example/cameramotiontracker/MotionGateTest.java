@@ -0,0 +1,37 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MotionGateTest {
+    private static final long FRAME_NANOS = 33333333L;
+
+    @Test
+    public void pass_skipsStaticFramesUpToMaxStaleness() {
+        MotionGate gate = new MotionGate(8, 16, 0.01f, 10 * FRAME_NANOS);
+        // the first frame has nothing to be compared with
+        assertTrue(gate.pass(1.0f, 0));
+        for (int frame = 1; frame < 10; frame++) {
+            assertFalse(gate.pass(0.001f, frame * FRAME_NANOS));
+        }
+        assertTrue(gate.pass(0.0f, 10 * FRAME_NANOS));
+        assertFalse(gate.pass(0.0f, 11 * FRAME_NANOS));
+
+        // motion passes right away and restarts the staleness
+        assertTrue(gate.pass(0.01f, 12 * FRAME_NANOS));
+        assertFalse(gate.pass(0.0f, 21 * FRAME_NANOS));
+        assertTrue(gate.pass(0.0f, 22 * FRAME_NANOS));
+    }
+
+    @Test
+    public void pass_passesAfterResetOrTimestampGoingBack() {
+        MotionGate gate = new MotionGate();
+        assertTrue(gate.pass(1.0f, 100 * FRAME_NANOS));
+        assertFalse(gate.pass(0.0f, 101 * FRAME_NANOS));
+        gate.reset();
+        assertTrue(gate.pass(0.0f, 102 * FRAME_NANOS));
+        assertTrue(gate.pass(0.0f, FRAME_NANOS));
+        assertFalse(gate.pass(0.0f, 2 * FRAME_NANOS));
+    }
+}
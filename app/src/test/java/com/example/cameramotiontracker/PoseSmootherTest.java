@@ -0,0 +1,77 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PoseSmootherTest {
+    private static final long FRAME_NANOS = 33333333L;
+
+    private static Pose pose(long frame, float y, float x, float score) {
+        Pose pose = new Pose();
+        for (int i = 0; i < Pose.JOINT_COUNT; i++) {
+            pose.set(i, y, x, score);
+        }
+        pose.setTimestamp(frame * FRAME_NANOS);
+        return pose;
+    }
+
+    @Test
+    public void filter_passesFirstPoseThrough() {
+        PoseSmoother smoother = new PoseSmoother(Pose.JOINT_COUNT);
+        Pose smoothed = new Pose();
+        smoother.filter(pose(1, 100, 200, 0.9f), smoothed);
+        assertEquals(100, smoothed.getY(Pose.NOSE), 0);
+        assertEquals(200, smoothed.getX(Pose.NOSE), 0);
+        assertEquals(0.9f, smoothed.getScore(Pose.NOSE), 0);
+        assertEquals(FRAME_NANOS, smoothed.getTimestamp());
+    }
+
+    @Test
+    public void filter_reducesJitterAtRest() {
+        PoseSmoother smoother = new PoseSmoother(Pose.JOINT_COUNT);
+        Random random = new Random(1);
+        Pose smoothed = new Pose();
+        double rawError = 0;
+        double smoothedError = 0;
+        for (int frame = 1; frame <= 300; frame++) {
+            float y = 300 + (float) random.nextGaussian() * 4;
+            smoother.filter(pose(frame, y, 200, 0.9f), smoothed);
+            if (frame > 30) {
+                rawError += (y - 300) * (y - 300);
+                smoothedError += (smoothed.getY(Pose.LEFT_HIP) - 300) * (smoothed.getY(Pose.LEFT_HIP) - 300);
+            }
+        }
+        assertTrue(smoothedError < rawError / 4);
+    }
+
+    @Test
+    public void filter_followsFastMotion() {
+        PoseSmoother smoother = new PoseSmoother(Pose.JOINT_COUNT);
+        Pose smoothed = new Pose();
+        // 30 pixels per frame, about 900 pixels per second
+        for (int frame = 1; frame <= 30; frame++) {
+            smoother.filter(pose(frame, 300, frame * 30, 0.9f), smoothed);
+        }
+        assertEquals(900, smoothed.getX(Pose.NOSE), 30);
+    }
+
+    @Test
+    public void filter_restartsUnconfidentJointsAndAfterGaps() {
+        PoseSmoother smoother = new PoseSmoother(Pose.JOINT_COUNT);
+        Pose smoothed = new Pose();
+        smoother.filter(pose(1, 100, 100, 0.9f), smoothed);
+        smoother.filter(pose(2, 400, 400, 0.1f), smoothed);
+        assertEquals(400, smoothed.getY(Pose.NOSE), 0);
+        smoother.filter(pose(3, 200, 200, 0.9f), smoothed);
+        assertEquals(200, smoothed.getY(Pose.NOSE), 0);
+
+        smoother.filter(pose(4, 250, 250, 0.9f), smoothed);
+        assertTrue(smoothed.getY(Pose.NOSE) < 249);
+        // a second without a pose
+        smoother.filter(pose(34, 500, 500, 0.9f), smoothed);
+        assertEquals(500, smoothed.getY(Pose.NOSE), 0);
+    }
+}
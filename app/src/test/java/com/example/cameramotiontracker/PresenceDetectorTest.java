@@ -0,0 +1,93 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PresenceDetectorTest {
+    private static final long FRAME_NANOS = 33333333L;
+
+    private static Pose pose(int confidentKeypoints) {
+        Pose pose = new Pose();
+        for (int i = 0; i < Pose.JOINT_COUNT; i++) {
+            pose.set(i, 100, 100, i < confidentKeypoints ? 0.9f : 0.1f);
+        }
+        return pose;
+    }
+
+    private static PresenceDetector asleep() {
+        PresenceDetector detector = new PresenceDetector(0.02f, 3, 5, 4, 60 * FRAME_NANOS);
+        for (int i = 0; i < 4; i++) {
+            detector.update(pose(2));
+        }
+        assertFalse(detector.isPresent());
+        // the first frame asleep probes the model
+        assertTrue(detector.shouldEstimate(0.0f, 0));
+        return detector;
+    }
+
+    @Test
+    public void update_sleepsAfterPosesWithoutPerson() {
+        PresenceDetector detector = new PresenceDetector(0.02f, 3, 5, 4, 60 * FRAME_NANOS);
+        assertTrue(detector.isPresent());
+        for (int i = 0; i < 3; i++) {
+            detector.update(pose(4));
+        }
+        // a person in between starts over
+        detector.update(pose(5));
+        for (int i = 0; i < 3; i++) {
+            detector.update(pose(0));
+        }
+        assertTrue(detector.isPresent());
+        assertTrue(detector.shouldEstimate(0.0f, 0));
+        detector.update(pose(0));
+        assertFalse(detector.isPresent());
+    }
+
+    @Test
+    public void shouldEstimate_wakesOnForegroundInARow() {
+        PresenceDetector detector = asleep();
+        assertFalse(detector.shouldEstimate(0.05f, FRAME_NANOS));
+        assertFalse(detector.shouldEstimate(0.05f, 2 * FRAME_NANOS));
+        assertFalse(detector.shouldEstimate(0.01f, 3 * FRAME_NANOS));
+        assertFalse(detector.shouldEstimate(0.05f, 4 * FRAME_NANOS));
+        assertFalse(detector.shouldEstimate(0.05f, 5 * FRAME_NANOS));
+        assertTrue(detector.shouldEstimate(0.05f, 6 * FRAME_NANOS));
+        assertTrue(detector.isPresent());
+        // awake, every frame runs the model
+        assertTrue(detector.shouldEstimate(0.0f, 7 * FRAME_NANOS));
+    }
+
+    @Test
+    public void shouldEstimate_probesWhileAsleep() {
+        PresenceDetector detector = asleep();
+        for (int frame = 1; frame < 60; frame++) {
+            assertFalse(detector.shouldEstimate(0.0f, frame * FRAME_NANOS));
+        }
+        assertTrue(detector.shouldEstimate(0.0f, 60 * FRAME_NANOS));
+        assertFalse(detector.isPresent());
+
+        // the probe found someone standing still
+        detector.update(pose(10));
+        assertTrue(detector.isPresent());
+        assertTrue(detector.shouldEstimate(0.0f, 61 * FRAME_NANOS));
+    }
+
+    @Test
+    public void update_sleepsAgainOnlyAfterSleepFramesOnceWoken() {
+        PresenceDetector detector = asleep();
+        assertFalse(detector.shouldEstimate(0.05f, FRAME_NANOS));
+        assertFalse(detector.shouldEstimate(0.05f, 2 * FRAME_NANOS));
+        assertTrue(detector.shouldEstimate(0.05f, 3 * FRAME_NANOS));
+
+        // a partly visible person does not put the model right back to sleep
+        detector.update(pose(0));
+        assertTrue(detector.isPresent());
+        for (int i = 0; i < 2; i++) {
+            detector.update(pose(0));
+        }
+        assertTrue(detector.isPresent());
+        detector.update(pose(0));
+        assertFalse(detector.isPresent());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RecordedFrameSourceTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    /**
+     * Returns a frame with planes as a camera delivers them, U and V interleaved, filled by its index.
+     */
+    private static YuvFrame cameraFrame(int index) {
+        ByteBuffer y = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        ByteBuffer vu = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 2 - 1);
+        for (int i = 0; i < y.capacity(); i++) {
+            y.put(i, (byte) (index + i));
+        }
+        for (int i = 0; i < vu.capacity(); i++) {
+            vu.put(i, (byte) (index - i));
+        }
+        ByteBuffer u = vu.duplicate();
+        u.position(1);
+        YuvFrame frame = new YuvFrame();
+        frame.set(WIDTH, HEIGHT, 1000000000L + index * 33000000L);
+        frame.setOrientation(index % 2 == 0 ? 90 : 270, index % 2 == 0);
+        frame.setPlane(0, y, 1, WIDTH);
+        frame.setPlane(1, u.slice(), 2, WIDTH);
+        frame.setPlane(2, vu, 2, WIDTH);
+        return frame;
+    }
+
+    private static File record(int frameCount, boolean withUnknownRecords) throws IOException {
+        File file = File.createTempFile("frames", ".cmtr");
+        file.deleteOnExit();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            ByteBuffer header = ByteBuffer.allocate(FrameRecording.HEADER_SIZE);
+            FrameRecording.writeHeader(header);
+            output.write(header.array());
+            for (int i = 0; i < frameCount; i++) {
+                if (withUnknownRecords) {
+                    ByteBuffer unknown = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                    unknown.putInt(99).putInt(4).putInt(i);
+                    output.write(unknown.array());
+                }
+                YuvFrame frame = cameraFrame(i);
+                ByteBuffer record = ByteBuffer.allocate(FrameRecording.frameRecordSize(frame));
+                FrameRecording.writeFrame(frame, record);
+                assertFalse(record.hasRemaining());
+                output.write(record.array());
+            }
+        }
+        return file;
+    }
+
+    private static void assertSameFrame(YuvFrame expected, YuvFrame actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getRotation(), actual.getRotation());
+        assertEquals(expected.isMirror(), actual.isMirror());
+        for (int i = 0; i < YuvFrame.PLANE_COUNT; i++) {
+            assertEquals(expected.getPixelStride(i), actual.getPixelStride(i));
+            assertEquals(expected.getRowStride(i), actual.getRowStride(i));
+            assertTrue(actual.getPlane(i).isDirect());
+            assertEquals(expected.getPlane(i), actual.getPlane(i));
+        }
+    }
+
+    @Test
+    public void read_returnsRecordedFrames() throws Exception {
+        File file = record(5, false);
+        try (RecordedFrameSource source = new RecordedFrameSource(file)) {
+            YuvFrame frame = new YuvFrame();
+            for (int i = 0; i < 5; i++) {
+                assertTrue(source.read(frame));
+                assertSameFrame(cameraFrame(i), frame);
+            }
+            assertFalse(source.read(frame));
+            source.rewind();
+            assertTrue(source.read(frame));
+            assertSameFrame(cameraFrame(0), frame);
+        }
+    }
+
+    @Test
+    public void read_skipsUnknownRecordsAndRemapsSmallWindows() throws Exception {
+        File file = record(7, true);
+        // a window only fits about one frame record
+        try (RecordedFrameSource source = new RecordedFrameSource(file, 128)) {
+            YuvFrame frame = new YuvFrame();
+            for (int i = 0; i < 7; i++) {
+                assertTrue(source.read(frame));
+                assertSameFrame(cameraFrame(i), frame);
+            }
+            assertFalse(source.read(frame));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        File file = File.createTempFile("frames", ".cmtr");
+        file.deleteOnExit();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[]{'R', 'I', 'F', 'F', 0, 0, 0, 0});
+        }
+        new RecordedFrameSource(file).close();
+    }
+
+    @Test
+    public void replayer_playsAtRecordedPace() throws Exception {
+        File file = record(4, false);
+        try (RecordedFrameSource source = new RecordedFrameSource(file)) {
+            List<Long> timestamps = new ArrayList<>();
+            FrameReplayer replayer = new FrameReplayer(source, frame -> timestamps.add(frame.getTimestamp()), true);
+            long start = System.nanoTime();
+            assertEquals(4, replayer.run());
+            // 3 intervals of 33 ms
+            assertTrue(System.nanoTime() - start >= 99000000L);
+            for (int i = 0; i < 4; i++) {
+                assertEquals(cameraFrame(i).getTimestamp(), (long) timestamps.get(i));
+            }
+
+            source.rewind();
+            timestamps.clear();
+            assertEquals(4, new FrameReplayer(source, frame -> timestamps.add(frame.getTimestamp()), false).run());
+            assertEquals(4, timestamps.size());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SkeletonGeometryTest {
+
+    @Test
+    public void build_connectsConfidentJointsOnly() {
+        Pose pose = new Pose();
+        pose.set(Pose.LEFT_SHOULDER, 0, 0, 0.9f);
+        pose.set(Pose.LEFT_ELBOW, 240, 320, 0.9f);
+        pose.set(Pose.LEFT_WRIST, 480, 640, 0.9f);
+        pose.set(Pose.RIGHT_SHOULDER, 100, 100, 0.1f);
+        SkeletonGeometry geometry = new SkeletonGeometry(Pose.JOINT_COUNT, 0.5f);
+        geometry.build(pose, 640, 480, 1.0f);
+
+        assertEquals(SkeletonGeometry.BORDER_VERTEX_COUNT, geometry.getLineOffset());
+        // shoulder to elbow and elbow to wrist
+        assertEquals(4, geometry.getLineVertexCount());
+        assertEquals(3, geometry.getPointCount());
+        assertEquals(SkeletonGeometry.BORDER_VERTEX_COUNT + 7, geometry.getVertexCount());
+
+        float[] vertices = geometry.getVertices();
+        int line = geometry.getLineOffset() * 2;
+        assertArrayEquals(new float[]{-1, 1, 0, 0, 0, 0, 1, -1},
+                java.util.Arrays.copyOfRange(vertices, line, line + 8), 1e-6f);
+        int point = geometry.getPointOffset() * 2;
+        assertArrayEquals(new float[]{-1, 1, 0, 0, 1, -1},
+                java.util.Arrays.copyOfRange(vertices, point, point + 6), 1e-6f);
+    }
+
+    @Test
+    public void build_scalesToPreviewHeight() {
+        Pose pose = new Pose();
+        pose.set(Pose.NOSE, 480, 640, 0.9f);
+        SkeletonGeometry geometry = new SkeletonGeometry(Pose.JOINT_COUNT, 0.5f);
+        geometry.build(pose, 640, 480, 0.5f);
+
+        float[] vertices = geometry.getVertices();
+        // the border ends half way down the view
+        assertEquals(0, vertices[7], 1e-6f);
+        assertEquals(0, vertices[9], 1e-6f);
+        int point = geometry.getPointOffset() * 2;
+        assertEquals(1, vertices[point], 1e-6f);
+        assertEquals(0, vertices[point + 1], 1e-6f);
+
+        geometry.build(pose, 0, 0, 0.5f);
+        assertEquals(0, geometry.getLineVertexCount());
+        assertEquals(0, geometry.getPointCount());
+    }
+
+    @Test
+    public void toQuads_widensLinesInPixels() {
+        Pose pose = new Pose();
+        // a horizontal line from a quarter to three quarters of a 200x100 view
+        pose.set(Pose.LEFT_SHOULDER, 50, 50, 0.9f);
+        pose.set(Pose.LEFT_ELBOW, 50, 150, 0.9f);
+        SkeletonGeometry geometry = new SkeletonGeometry(Pose.JOINT_COUNT, 0.5f);
+        geometry.build(pose, 200, 100, 1.0f);
+        assertEquals(2, geometry.getLineVertexCount());
+
+        float[] quads = new float[SkeletonGeometry.QUAD_VERTEX_COUNT * 2];
+        int count = geometry.toQuads(geometry.getLineOffset(), 2, 10, 200, 100, quads, 0);
+        assertEquals(SkeletonGeometry.QUAD_VERTEX_COUNT, count);
+        // 5 pixels past both ends and to both sides: x 45..155 of 200, y 45..55 of 100
+        float left = 45 / 100.0f - 1;
+        float right = 155 / 100.0f - 1;
+        float top = 1 - 45 / 50.0f;
+        float bottom = 1 - 55 / 50.0f;
+        assertArrayEquals(new float[]{
+                left, top, left, bottom, right, top,
+                right, top, left, bottom, right, bottom}, quads, 1e-5f);
+    }
+}
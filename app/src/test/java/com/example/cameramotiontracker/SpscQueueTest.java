@@ -0,0 +1,50 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpscQueueTest {
+    @Test
+    public void offerAndPoll_keepOrderUpToCapacity() {
+        SpscQueue<Integer> queue = new SpscQueue<>(3);
+        assertEquals(4, queue.capacity());
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++) {
+            assertNull(queue.offer(i));
+        }
+        // full, the item is handed back
+        assertEquals(4, (int) queue.offer(4));
+        assertEquals(0, (int) queue.poll());
+        assertNull(queue.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void take_receivesEveryItemFromOtherThread() throws Exception {
+        final int count = 200000;
+        SpscQueue<Integer> queue = new SpscQueue<>(4);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (queue.offer(i) != null) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) queue.take());
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void take_throwsWhenInterrupted() throws Exception {
+        Thread.currentThread().interrupt();
+        new SpscQueue<Integer>(1).take();
+    }
+}
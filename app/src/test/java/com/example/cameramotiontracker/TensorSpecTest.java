@@ -0,0 +1,51 @@
+package com.example.cameramotiontracker;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class TensorSpecTest {
+    @Test
+    public void inputMapping_isIdentityForPlainUint8() {
+        TensorSpec spec = new TensorSpec(new int[]{1, 192, 192, 3}, TensorSpec.ELEMENT_TYPE_UINT8, 0, 0);
+        assertEquals(1.0f, spec.getInputValueScale(0, 1), 0);
+        assertEquals(0.0f, spec.getInputValueOffset(0, 1), 0);
+        assertEquals(192 * 192 * 3, spec.getByteSize());
+        assertEquals(3, spec.getDimension(-1));
+    }
+
+    @Test
+    public void inputMapping_normalizesAndQuantizes() {
+        // (p - 127.5) / 127.5 quantized with scale 1 / 128 and zero point 0
+        TensorSpec spec = new TensorSpec(new int[]{1, 8, 8, 3}, TensorSpec.ELEMENT_TYPE_INT8, 1 / 128.0f, 0);
+        float scale = spec.getInputValueScale(127.5f, 127.5f);
+        float offset = spec.getInputValueOffset(127.5f, 127.5f);
+        assertEquals(-128.0f, 0 * scale + offset, 1e-3);
+        assertEquals(128.0f, 255 * scale + offset, 1e-3);
+
+        TensorSpec floatSpec = new TensorSpec(new int[]{1, 8, 8, 3}, TensorSpec.ELEMENT_TYPE_FLOAT32, 0, 0);
+        assertEquals(-1.0f, floatSpec.getInputValueOffset(127.5f, 127.5f), 1e-6);
+        assertEquals(4 * 8 * 8 * 3, floatSpec.getByteSize());
+    }
+
+    @Test
+    public void readValues_dequantizes() {
+        float[] values = new float[3];
+        ByteBuffer data = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder());
+
+        data.put(0, (byte) 200).put(1, (byte) 10).put(2, (byte) 255);
+        new TensorSpec(new int[]{1, 3}, TensorSpec.ELEMENT_TYPE_UINT8, 0.5f, 10).readValues(data, values);
+        assertArrayEquals(new float[]{95.0f, 0.0f, 122.5f}, values, 0);
+
+        data.put(0, (byte) -128).put(1, (byte) 0).put(2, (byte) 127);
+        new TensorSpec(new int[]{1, 3}, TensorSpec.ELEMENT_TYPE_INT8, 0.25f, -128).readValues(data, values);
+        assertArrayEquals(new float[]{0.0f, 32.0f, 63.75f}, values, 0);
+
+        data.putFloat(0, 0.25f).putFloat(4, -1.5f).putFloat(8, 3.0f);
+        new TensorSpec(new int[]{1, 3}, TensorSpec.ELEMENT_TYPE_FLOAT32, 0, 0).readValues(data, values);
+        assertArrayEquals(new float[]{0.25f, -1.5f, 3.0f}, values, 0);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.cameramotiontracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything between the interpreter and the renderer: reading the model output,
+ * mapping the keypoints to the image, smoothing them and determining the crop region of the next frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeypointPostprocessBenchmark {
+    private static final int KEYPOINT_COUNT = Pose.JOINT_COUNT;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private int mImageHeight;
+    private int mImageWidth;
+    private TensorSpec mOutputSpec;
+    private ByteBuffer mOutputBuffer;
+    private float[] mOutputValues;
+    private double[] mCropRegion;
+    private Pose mPose;
+    private PoseSmoother mPoseSmoother;
+    private CropPredictor mCropPredictor;
+    private double[] mPredictedCropRegion;
+    private long mTimestamp;
+
+    @Setup
+    public void setUp() {
+        // portrait image of an upright phone
+        int[] size = SyntheticFrame.parse(resolution);
+        mImageHeight = size[0];
+        mImageWidth = size[1];
+
+        // MoveNet output [1, 1, 17, 3], a person standing in the middle of the crop and fully visible
+        mOutputSpec = new TensorSpec(new int[]{1, 1, KEYPOINT_COUNT, 3}, TensorSpec.ELEMENT_TYPE_FLOAT32, 0.0f, 0);
+        mOutputBuffer = ByteBuffer.allocateDirect(mOutputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        Random random = new Random(42);
+        for (int i = 0; i < KEYPOINT_COUNT; i++) {
+            mOutputBuffer.putFloat(0.3f + 0.4f * i / KEYPOINT_COUNT);
+            mOutputBuffer.putFloat(0.45f + 0.1f * random.nextFloat());
+            mOutputBuffer.putFloat(0.6f + 0.4f * random.nextFloat());
+        }
+        mOutputValues = new float[mOutputSpec.getElementCount()];
+        mOutputSpec.readValues(mOutputBuffer, mOutputValues);
+
+        mCropRegion = CropRegion.init(mImageHeight, mImageWidth);
+        mPose = new Pose(KEYPOINT_COUNT);
+        CropRegion.mapKeypoints(mOutputValues, mCropRegion, mImageHeight, mImageWidth, mPose);
+        mPoseSmoother = new PoseSmoother(KEYPOINT_COUNT);
+        mCropPredictor = new CropPredictor();
+        mPredictedCropRegion = new double[CropRegion.SIZE];
+    }
+
+    @Benchmark
+    public float[] readOutput() {
+        mOutputSpec.readValues(mOutputBuffer, mOutputValues);
+        return mOutputValues;
+    }
+
+    @Benchmark
+    public Pose mapKeypoints() {
+        CropRegion.mapKeypoints(mOutputValues, mCropRegion, mImageHeight, mImageWidth, mPose);
+        return mPose;
+    }
+
+    @Benchmark
+    public Pose smooth() {
+        // 30 FPS, so every call filters against the one before
+        mTimestamp += 33333333L;
+        mPose.setTimestamp(mTimestamp);
+        mPoseSmoother.filter(mPose, mPose);
+        return mPose;
+    }
+
+    @Benchmark
+    public double[] determineCropRegion() {
+        return CropRegion.determine(mPose, mImageHeight, mImageWidth);
+    }
+
+    @Benchmark
+    public double[] predictCropRegion() {
+        mTimestamp += 33333333L;
+        mPose.setTimestamp(mTimestamp);
+        mCropPredictor.determine(mPose, mImageHeight, mImageWidth, mPredictedCropRegion);
+        return mPredictedCropRegion;
+    }
+
+    /**
+     * All of the above, as PoseEstimator.infer runs them after every inference.
+     */
+    @Benchmark
+    public double[] postprocess() {
+        mOutputSpec.readValues(mOutputBuffer, mOutputValues);
+        CropRegion.mapKeypoints(mOutputValues, mCropRegion, mImageHeight, mImageWidth, mPose);
+        mTimestamp += 33333333L;
+        mPose.setTimestamp(mTimestamp);
+        mPoseSmoother.filter(mPose, mPose);
+        return CropRegion.determine(mPose, mImageHeight, mImageWidth);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.cameramotiontracker;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * YUV_420_888 planes filled with noise, laid out semi planar like the frames of most camera HALs:
+ * U and V share one interleaved buffer with a pixel stride of 2.
+ */
+class SyntheticFrame {
+    final int mWidth;
+    final int mHeight;
+    final ByteBuffer mY;
+    final ByteBuffer mU;
+    final ByteBuffer mV;
+    final int mYRowStride;
+    final int mUvRowStride;
+    final int mUvPixelStride = 2;
+
+    /**
+     * @param resolution "widthxheight", e.g. "1920x1080"
+     */
+    SyntheticFrame(String resolution) {
+        int[] size = parse(resolution);
+        mWidth = size[0];
+        mHeight = size[1];
+        mYRowStride = mWidth;
+        mUvRowStride = mWidth;
+
+        Random random = new Random(42);
+        byte[] luma = new byte[mYRowStride * mHeight];
+        byte[] chroma = new byte[mUvRowStride * ((mHeight + 1) / 2)];
+        random.nextBytes(luma);
+        random.nextBytes(chroma);
+        mY = ByteBuffer.allocateDirect(luma.length);
+        mY.put(luma).rewind();
+        ByteBuffer vu = ByteBuffer.allocateDirect(chroma.length);
+        vu.put(chroma).rewind();
+        // NV21, V first
+        mV = vu.slice();
+        vu.position(1);
+        mU = vu.slice();
+    }
+
+    /**
+     * Returns {width, height} of "widthxheight".
+     */
+    static int[] parse(String resolution) {
+        String[] size = resolution.split("x");
+        return new int[]{Integer.parseInt(size[0]), Integer.parseInt(size[1])};
+    }
+}
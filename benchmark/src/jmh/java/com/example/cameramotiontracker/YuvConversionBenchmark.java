@@ -0,0 +1,89 @@
+package com.example.cameramotiontracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Native YUV conversion through the same JNI entry points the app calls: the full frame to ARGB,
+ * and the crop, rotation and resize of the camera frame into the model input for every input element type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YuvConversionBenchmark {
+    // MoveNet Lightning input
+    private static final int INPUT_SIZE = 192;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private SyntheticFrame mFrame;
+    private int[] mArgb;
+    private ByteBuffer mInput;
+    private double[] mCropRegion;
+
+    @Setup
+    public void setUp() {
+        mFrame = new SyntheticFrame(resolution);
+        mArgb = new int[mFrame.mWidth * mFrame.mHeight];
+        mInput = ByteBuffer.allocateDirect(INPUT_SIZE * INPUT_SIZE * 3 * 4).order(ByteOrder.nativeOrder());
+        // centered square of the portrait image, which is height x width after the rotation
+        mCropRegion = CropRegion.init(mFrame.mWidth, mFrame.mHeight);
+        YuvNative.setThreadCountNative(threads);
+    }
+
+    @Benchmark
+    public int[] toArgb() {
+        YuvNative.yuv420toArgbNative(mFrame.mWidth, mFrame.mHeight, mFrame.mY, mFrame.mU, mFrame.mV,
+                1, mFrame.mUvPixelStride, mFrame.mYRowStride, mFrame.mUvRowStride, mArgb);
+        return mArgb;
+    }
+
+    @Benchmark
+    public ByteBuffer cropResizeUint8() {
+        return cropResize(TensorSpec.ELEMENT_TYPE_UINT8, 1.0f, 0.0f);
+    }
+
+    @Benchmark
+    public ByteBuffer cropResizeInt8() {
+        return cropResize(TensorSpec.ELEMENT_TYPE_INT8, 1.0f, -128.0f);
+    }
+
+    @Benchmark
+    public ByteBuffer cropResizeFloat32() {
+        return cropResize(TensorSpec.ELEMENT_TYPE_FLOAT32, 1.0f / 255, 0.0f);
+    }
+
+    /**
+     * Samples the crop region from the frame rotated and mirrored as the front camera of a phone held upright.
+     */
+    private ByteBuffer cropResize(int elementType, float valueScale, float valueOffset) {
+        double[] cropRegion = mCropRegion;
+        YuvNative.yuv420CropResizeNative(mFrame.mWidth, mFrame.mHeight, mFrame.mY, mFrame.mU, mFrame.mV,
+                1, mFrame.mUvPixelStride, mFrame.mYRowStride, mFrame.mUvRowStride,
+                (float) cropRegion[CropRegion.Y_MIN], (float) cropRegion[CropRegion.X_MIN],
+                (float) cropRegion[CropRegion.Y_MAX], (float) cropRegion[CropRegion.X_MAX],
+                270, true, mInput, INPUT_SIZE, INPUT_SIZE, YuvNative.CHANNEL_ORDER_RGB,
+                elementType, valueScale, valueOffset);
+        return mInput;
+    }
+}